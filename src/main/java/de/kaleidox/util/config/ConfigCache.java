@@ -0,0 +1,182 @@
+package de.kaleidox.util.config;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class represents a binary file with the flattened and typed values of a JSON configuration file.
+ * Reading it skips parsing the JSON file, as long as the size and modification time of that file did not change.
+ * <p>
+ * The cache starts with a header of the size and modification time of the source file, and the amount of entries.
+ * Each entry is the key, a type tag, and the value; strings are stored as UTF-8, prefixed with their length in
+ * a variable amount of bytes, so that the cache of short keys and values is not larger than the JSON file.
+ */
+final class ConfigCache {
+    private final static int MAGIC = 0x4B434647; // "KCFG"
+    private final static int VERSION = 1;
+    private final static int BUFFER_SIZE = 8192;
+
+    private final static byte NULL = 0;
+    private final static byte STRING = 1;
+    private final static byte INT = 2;
+    private final static byte LONG = 3;
+    private final static byte DOUBLE = 4;
+    private final static byte TRUE = 5;
+    private final static byte FALSE = 6;
+
+    private final File cache;
+    private final File source;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param cache  The file to store the values in.
+     * @param source The JSON file whose values are stored.
+     */
+    ConfigCache(File cache, File source) {
+        this.cache = cache;
+        this.source = source;
+    }
+
+    /**
+     * Reads the cached values, if the cache is up to date.
+     *
+     * @return The cached values, or null if there is no cache, it is outdated, or it could not be read.
+     */
+    @Nullable Map<String, Object> read() {
+        // no value can be longer than the cache; checked to not allocate huge arrays for a damaged cache
+        final long limit = cache.length();
+        if (limit == 0) return null;
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(cache), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) return null;
+            if (in.readLong() != source.length() || in.readLong() != source.lastModified()) return null;
+
+            int count = readLength(in);
+            if (count < 0 || count > limit) return null;
+            Map<String, Object> values = new HashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) values.put(readString(in, limit), readValue(in, limit));
+            return Collections.unmodifiableMap(values);
+        } catch (IOException | IllegalArgumentException e) {
+            // a damaged cache is rebuilt from the source
+            return null;
+        }
+    }
+
+    /**
+     * Writes values to the cache, replacing it atomically.
+     * The size and modification time of the source are taken before it is parsed, so that a change during parsing
+     * leaves the cache outdated instead of wrong.
+     *
+     * @param values       The values to store.
+     * @param length       The size of the source when it was read.
+     * @param lastModified The modification time of the source when it was read.
+     * @throws IOException If the cache could not be written.
+     */
+    void write(Map<String, Object> values, long length, long lastModified) throws IOException {
+        File tmp = new File(cache.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(length);
+            out.writeLong(lastModified);
+
+            writeLength(out, values.size());
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                writeString(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        }
+        Files.move(tmp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static Object readValue(DataInputStream in, long limit) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in, limit);
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case TRUE:
+                return true;
+            case FALSE:
+                return false;
+            default:
+                throw new IllegalArgumentException("Unknown type: " + type);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) out.writeByte(NULL);
+        else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) out.writeByte((Boolean) value ? TRUE : FALSE);
+        else throw new IllegalArgumentException("Unsupported value type: " + value.getClass());
+    }
+
+    private static String readString(DataInputStream in, long limit) throws IOException {
+        int length = readLength(in);
+        if (length < 0 || length > limit) throw new IOException("Damaged cache");
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeLength(out, bytes.length);
+        out.write(bytes);
+    }
+
+    // 7 bits per byte, the highest bit marks that another byte follows
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) return length;
+        }
+        throw new IOException("Damaged cache");
+    }
+
+    private static void writeLength(DataOutputStream out, int length) throws IOException {
+        while ((length & ~0x7F) != 0) {
+            out.writeByte((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.writeByte(length);
+    }
+}
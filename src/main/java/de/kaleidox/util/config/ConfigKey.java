@@ -0,0 +1,82 @@
+package de.kaleidox.util.config;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * This class represents a handle to a variable of a {@link Configuration}.
+ * The mapped and cast value of the variable is cached, so reading it is a single volatile read.
+ * The cache is invalidated when the variable is registered again, or when a reload changes its value.
+ *
+ * @param <T> The type of the variable.
+ * @see Configuration#key(String, Class)
+ */
+public final class ConfigKey<T> {
+    @SuppressWarnings("rawtypes")
+    private final static AtomicReferenceFieldUpdater<ConfigKey, Object> VALUE =
+            AtomicReferenceFieldUpdater.newUpdater(ConfigKey.class, Object.class, "value");
+
+    private final Configuration.ConfigNode node;
+    private final String name;
+    private final Class<T> type;
+    private volatile Object value = new Invalidated();
+
+    ConfigKey(Configuration.ConfigNode node, String name, Class<T> type) {
+        this.node = node;
+        this.name = name;
+        this.type = type;
+    }
+
+    /**
+     * Gets the name of the variable.
+     *
+     * @return the name of the variable.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the type of the variable.
+     *
+     * @return the type the variable is cast to.
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Gets the value of the variable.
+     *
+     * @return the mapped value of the variable.
+     * @throws ClassCastException     If the mapped value is not of the type of this handle.
+     * @throws NoSuchElementException If the variable is not registered and was removed from the file.
+     */
+    @SuppressWarnings("unchecked")
+    public T get() throws ClassCastException, NoSuchElementException {
+        Object value = this.value;
+        return value instanceof Invalidated ? resolve(value) : (T) value;
+    }
+
+    /**
+     * Drops the cached value. Must be called after the node or the values of the configuration changed.
+     */
+    void invalidate() {
+        // a new marker each time, so that a value resolved before the change cannot replace it
+        value = new Invalidated();
+    }
+
+    private T resolve(Object invalidated) {
+        T resolved = type.cast(node.mapped());
+        VALUE.compareAndSet(this, invalidated, resolved);
+        return resolved;
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigKey{" + name + "}";
+    }
+
+    private static final class Invalidated {
+    }
+}
@@ -0,0 +1,151 @@
+package de.kaleidox.util.config;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * This interface represents a layer of a {@link Configuration}, which provides flattened keys and their values.
+ * The layers of a configuration are merged once when it is loaded, so the amount of layers does not affect lookups.
+ *
+ * @see Configuration#Configuration(ConfigSource...)
+ */
+@FunctionalInterface
+public interface ConfigSource {
+    /**
+     * Reads the variables of this source.
+     *
+     * @return A map of the flattened keys to their values.
+     * @throws IOException If the source could not be read.
+     */
+    Map<String, Object> read() throws IOException;
+
+    /**
+     * Gets the file this source reads from, if any. The file is watched by {@link Configuration#watch()}.
+     *
+     * @return the file of this source, or null if it does not read from a file.
+     */
+    default @Nullable File getFile() {
+        return null;
+    }
+
+    /**
+     * Creates a source that reads a JSON resource from {@link Configuration#BASE_PATH} on the classpath.
+     * A missing resource provides no variables.
+     *
+     * @param name The name of the resource.
+     * @return A new source.
+     */
+    static ConfigSource resource(String name) {
+        return () -> {
+            InputStream stream = ClassLoader.getSystemResourceAsStream(Configuration.BASE_PATH + name);
+            return stream == null ? Collections.emptyMap() : Configuration.readValues(stream);
+        };
+    }
+
+    /**
+     * Creates a source that reads a JSON file. A missing file provides no variables.
+     *
+     * @param file The file to read.
+     * @return A new source.
+     */
+    static ConfigSource file(File file) {
+        return new ConfigSource() {
+            @Override
+            public Map<String, Object> read() throws IOException {
+                return file.exists() ? Configuration.readValues(new FileInputStream(file)) : Collections.emptyMap();
+            }
+
+            @Override
+            public File getFile() {
+                return file;
+            }
+        };
+    }
+
+    /**
+     * Creates a source that reads a JSON file, and keeps its flattened values in a binary cache next to it,
+     * named like the file with {@code .cache} appended.
+     * Later reads load the cache instead of parsing the file, as long as the size and modification time of the file
+     * are unchanged; otherwise the file is parsed and the cache is rewritten. A missing file provides no variables.
+     *
+     * @param file The file to read.
+     * @return A new source.
+     */
+    static ConfigSource cachedFile(File file) {
+        ConfigCache cache = new ConfigCache(new File(file.getPath() + ".cache"), file);
+        return new ConfigSource() {
+            @Override
+            public Map<String, Object> read() throws IOException {
+                if (!file.exists()) return Collections.emptyMap();
+
+                Map<String, Object> cached = cache.read();
+                if (cached != null) return cached;
+
+                long length = file.length();
+                long lastModified = file.lastModified();
+                Map<String, Object> values = Configuration.readValues(new FileInputStream(file));
+                try {
+                    cache.write(values, length, lastModified);
+                } catch (IOException ignored) {
+                    // without a cache, the next read parses the file again
+                }
+                return values;
+            }
+
+            @Override
+            public File getFile() {
+                return file;
+            }
+        };
+    }
+
+    /**
+     * Creates a source of the environment variables that start with a prefix.
+     * The prefix is removed, and the rest is lower-cased with {@code _} replaced by {@code .},
+     * so that {@code APP_PERSON_AGE} with the prefix {@code APP_} becomes {@code person.age}.
+     * Values are typed like in JSON files; see {@link #systemProperties(String)}.
+     *
+     * @param prefix The prefix of the variables to include.
+     * @return A new source.
+     */
+    static ConfigSource environment(String prefix) {
+        return () -> {
+            Map<String, Object> values = new HashMap<>();
+            System.getenv().forEach((name, value) -> {
+                if (name.startsWith(prefix)) values.put(
+                        name.substring(prefix.length()).toLowerCase(Locale.ROOT).replace('_', '.'),
+                        Configuration.readScalar(value));
+            });
+            return values;
+        };
+    }
+
+    /**
+     * Creates a source of the system properties that start with a prefix, which is removed from the keys.
+     * Values are typed like in JSON files: {@code true} and {@code false} become booleans,
+     * integral numbers become integers or longs, decimal numbers become doubles, and anything else stays a string.
+     * Numbers that would not format back to the same text, like {@code 007} or {@code 1.10}, stay strings as well.
+     *
+     * @param prefix The prefix of the properties to include.
+     * @return A new source.
+     */
+    static ConfigSource systemProperties(String prefix) {
+        return () -> {
+            Map<String, Object> values = new HashMap<>();
+            Properties properties = System.getProperties();
+            for (String name : properties.stringPropertyNames())
+                if (name.startsWith(prefix))
+                    values.put(name.substring(prefix.length()), Configuration.readScalar(properties.getProperty(name)));
+            return values;
+        };
+    }
+}
@@ -1,36 +1,84 @@
 package de.kaleidox.util.config;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonPointer;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonToken;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
-import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
-
-import static de.kaleidox.util.helpers.JsonHelper.ofNode;
-import static de.kaleidox.util.helpers.JsonHelper.parseExceptional;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
 public class Configuration extends Hashtable<String, Configuration.ConfigNode> {
     public final static String BASE_PATH = "config/";
+    private final static JsonFactory JSON_FACTORY = new JsonFactory();
+    private final static long WATCH_SETTLE_MILLIS = 50;
+    private final static Pattern INTEGRAL = Pattern.compile("-?\\d+");
+    private final static Pattern DECIMAL = Pattern.compile("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?");
+
+    private final List<ConfigSource> sources;
+    private final CopyOnWriteArrayList<Consumer<Set<String>>> listeners = new CopyOnWriteArrayList<>();
+    private final Object reloadLock = new Object();
+    // the merged values of the sources and the nodes in a lock-free table, published together;
+    // replaced as a whole on reload, so a read never sees a half-loaded file or a node without its value
+    private volatile State state = new State(Collections.emptyMap(), FlatTable.empty());
+    private WatchService watchService;
 
     public Configuration(String name) {
+        this(true, defaultSource(name));
+    }
+
+    /**
+     * Creates a configuration from layered sources, for example a resource with defaults, a file,
+     * and overrides from environment variables and system properties.
+     * The sources are merged once into one set of values, in which a source overrides the ones before it.
+     *
+     * @param sources The sources, from the lowest to the highest precedence.
+     * @throws UncheckedIOException If a source could not be read.
+     * @see ConfigSource
+     */
+    public Configuration(ConfigSource... sources) {
+        this(false, sources);
+    }
+
+    private Configuration(boolean lenient, ConfigSource... sources) {
         super();
-        File file = new File(BASE_PATH + name);
+        this.sources = Collections.unmodifiableList(Arrays.asList(sources.clone()));
 
+        Map<String, Object> values = Collections.emptyMap();
         try {
-            InputStream resStream = ClassLoader.getSystemResourceAsStream(BASE_PATH + name);
-            if (resStream != null) readFile(resStream);
-            else {
-                if (!file.exists()) file.createNewFile();
-                readFile(new FileInputStream(file));
-            }
-        } catch (IOException ignored) {
+            values = readSources();
+        } catch (UncheckedIOException e) {
+            if (!lenient) throw e;
         }
+        for (String key : values.keySet()) super.put(key, new ConfigNode(key, Function.identity()));
+        state = new State(values, FlatTable.copyOf(this));
     }
 
     public Configuration register(String varName, Object value) {
@@ -38,14 +86,39 @@ public class Configuration extends Hashtable<String, Configuration.ConfigNode> {
     }
 
     public <T> Configuration register(String varName, T value, Function<Object, T> mapper) {
-        if (containsKey(varName)) {
-            ConfigNode node = get(varName);
-            node.def = value;
-            node.mapper = mapper;
-        } else put(varName, new ConfigNode(value, mapper));
+        // a new node is complete before it is published; an existing one is changed under the same monitor
+        ConfigNode node = publishing(varName, () -> {
+            ConfigNode existing = super.get(varName);
+            ConfigNode registered = existing != null ? existing : new ConfigNode(varName, mapper);
+            registered.def = value;
+            registered.mapper = mapper;
+            registered.registered = true;
+            if (existing == null) super.put(varName, registered);
+            return registered;
+        });
+        node.invalidate();
         return this;
     }
 
+    /**
+     * Gets a handle to a variable, which caches its mapped value.
+     * Prefer handles over {@link #var(String, Class)} for variables that are read often.
+     *
+     * @param varName The name of the variable.
+     * @param as      The type of the variable.
+     * @param <V>     The type of the variable.
+     * @return A handle to the variable.
+     * @throws NoSuchElementException If the variable is neither registered nor contained in the file.
+     */
+    public <V> ConfigKey<V> key(String varName, Class<V> as) throws NoSuchElementException {
+        ConfigNode node = get(varName);
+        if (node == null) throw new NoSuchElementException("Variable not found: " + varName);
+
+        ConfigKey<V> key = new ConfigKey<>(node, varName, as);
+        node.keys.add(key);
+        return key;
+    }
+
     public String var(String varName) throws NoSuchElementException {
         return var(varName, Object.class).toString();
     }
@@ -54,50 +127,426 @@ public class Configuration extends Hashtable<String, Configuration.ConfigNode> {
         return as.cast(getRaw(varName));
     }
 
+    /**
+     * Starts watching the files of this configuration for changes.
+     * When a file changes, the sources are read into a new set of values, which replaces the current one at once;
+     * reading variables never waits for a reload. Listeners are notified of the keys whose values changed.
+     *
+     * @return This instance.
+     * @throws IllegalStateException If the files are already watched, or if no source reads from a file.
+     * @throws UncheckedIOException  If the files could not be watched.
+     * @see #addListener(Consumer)
+     */
+    public Configuration watch() {
+        synchronized (reloadLock) {
+            if (watchService != null) throw new IllegalStateException("The file is already being watched!");
+
+            Set<Path> files = new HashSet<>();
+            for (ConfigSource source : sources)
+                if (source.getFile() != null) files.add(source.getFile().getAbsoluteFile().toPath());
+            if (files.isEmpty()) throw new IllegalStateException("The configuration has no file to watch!");
+
+            try {
+                watchService = FileSystems.getDefault().newWatchService();
+                for (Path path : files)
+                    path.getParent().register(watchService,
+                            StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (IOException e) {
+                stopWatching();
+                throw new UncheckedIOException(e);
+            }
+
+            WatchService service = watchService;
+            Thread watcher = new Thread(() -> {
+                try {
+                    while (true) {
+                        // editors usually truncate the file first; wait until its events settle to not read it half-written
+                        boolean changed = false;
+                        for (WatchKey key = service.take(); key != null;
+                             key = service.poll(WATCH_SETTLE_MILLIS, TimeUnit.MILLISECONDS)) {
+                            Path directory = (Path) key.watchable();
+                            for (WatchEvent<?> event : key.pollEvents())
+                                changed |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                                        || files.contains(directory.resolve((Path) event.context()));
+                            key.reset();
+                        }
+
+                        if (changed) try {
+                            reload();
+                        } catch (RuntimeException e) {
+                            // the current values are kept; the next modification of the file triggers another reload
+                            e.printStackTrace();
+                        }
+                    }
+                } catch (InterruptedException | ClosedWatchServiceException ignored) {
+                }
+            }, "Configuration Watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+        return this;
+    }
+
+    /**
+     * Stops watching the files, if they are watched.
+     *
+     * @see #watch()
+     */
+    public void stopWatching() {
+        synchronized (reloadLock) {
+            if (watchService == null) return;
+
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            watchService = null;
+        }
+    }
+
+    /**
+     * Checks whether the files are watched for changes.
+     *
+     * @return whether the files are watched.
+     * @see #watch()
+     */
+    public boolean isWatching() {
+        synchronized (reloadLock) {
+            return watchService != null;
+        }
+    }
+
+    /**
+     * Reads the sources again, replaces the current values at once, and notifies the listeners of the changed keys.
+     * If a source cannot be read or parsed, the current values are kept.
+     *
+     * @throws UncheckedIOException If a source could not be read or parsed.
+     */
+    public void reload() {
+        Set<String> changed = new HashSet<>();
+        synchronized (reloadLock) {
+            Map<String, Object> current = readSources();
+
+            Map<String, Object> previous = state.values;
+            current.forEach((key, value) -> {
+                if (!previous.containsKey(key) || !Objects.equals(previous.get(key), value)) changed.add(key);
+            });
+            for (String key : previous.keySet()) if (!current.containsKey(key)) changed.add(key);
+            if (changed.isEmpty()) return;
+
+            // the nodes of new keys and the new values are published in one step, before any key is invalidated
+            synchronized (this) {
+                for (String key : changed) {
+                    if (current.containsKey(key)) super.putIfAbsent(key, new ConfigNode(key, Function.identity()));
+                    else super.computeIfPresent(key,
+                            (k, node) -> node.registered || !node.keys.isEmpty() ? node : null);
+                }
+                state = new State(current, FlatTable.copyOf(this));
+            }
+            for (String key : changed) {
+                ConfigNode node = get(key);
+                if (node != null) node.invalidate();
+            }
+        }
+
+        Set<String> keys = Collections.unmodifiableSet(changed);
+        for (Consumer<Set<String>> listener : listeners) {
+            try {
+                listener.accept(keys);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Adds a listener that is notified after a reload changed any values.
+     * The listener receives the keys whose values changed, appeared or disappeared; it runs on the reloading thread.
+     *
+     * @param listener The listener to add.
+     * @return This instance.
+     * @see #watch()
+     */
+    public Configuration addListener(Consumer<Set<String>> listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener The listener to remove.
+     * @return whether the listener was added before.
+     */
+    public boolean removeListener(Consumer<Set<String>> listener) {
+        return listeners.remove(listener);
+    }
+
+    @Override
+    public ConfigNode get(Object key) {
+        return state.nodes.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return state.nodes.get(key) != null;
+    }
+
+    @Override
+    public ConfigNode put(String key, ConfigNode value) {
+        return publishing(key, () -> super.put(key, value));
+    }
+
+    @Override
+    public ConfigNode putIfAbsent(String key, ConfigNode value) {
+        return publishing(key, () -> super.putIfAbsent(key, value));
+    }
+
+    @Override
+    public ConfigNode remove(Object key) {
+        return publishing(key, () -> super.remove(key));
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return publishing(key, () -> super.remove(key, value));
+    }
+
+    @Override
+    public ConfigNode replace(String key, ConfigNode value) {
+        return publishing(key, () -> super.replace(key, value));
+    }
+
+    @Override
+    public boolean replace(String key, ConfigNode oldValue, ConfigNode newValue) {
+        return publishing(key, () -> super.replace(key, oldValue, newValue));
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends ConfigNode> map) {
+        // one new table for all entries, instead of one per entry through put
+        publishing(() -> {
+            map.forEach(super::put);
+            return null;
+        });
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super String, ? super ConfigNode, ? extends ConfigNode> function) {
+        publishing(() -> {
+            super.replaceAll(function);
+            return null;
+        });
+    }
+
+    @Override
+    public ConfigNode compute(String key,
+                              BiFunction<? super String, ? super ConfigNode, ? extends ConfigNode> function) {
+        return publishing(key, () -> super.compute(key, function));
+    }
+
+    @Override
+    public ConfigNode computeIfAbsent(String key, Function<? super String, ? extends ConfigNode> function) {
+        return publishing(key, () -> super.computeIfAbsent(key, function));
+    }
+
+    @Override
+    public ConfigNode computeIfPresent(String key,
+                                       BiFunction<? super String, ? super ConfigNode, ? extends ConfigNode> function) {
+        return publishing(key, () -> super.computeIfPresent(key, function));
+    }
+
+    @Override
+    public ConfigNode merge(String key, ConfigNode value,
+                            BiFunction<? super ConfigNode, ? super ConfigNode, ? extends ConfigNode> function) {
+        return publishing(key, () -> super.merge(key, value, function));
+    }
+
+    @Override
+    public void clear() {
+        publishing(() -> {
+            super.clear();
+            return null;
+        });
+    }
+
+    // the views are read-only, as changes through them would not be published
+    @Override
+    public Set<String> keySet() {
+        return Collections.unmodifiableSet(super.keySet());
+    }
+
+    @Override
+    public Set<Map.Entry<String, ConfigNode>> entrySet() {
+        return Collections.unmodifiableSet(super.entrySet());
+    }
+
+    @Override
+    public Collection<ConfigNode> values() {
+        return Collections.unmodifiableCollection(super.values());
+    }
+
+    // applies a change to the Hashtable, and publishes a new lookup table of its entries
+    private synchronized <R> R publishing(Supplier<R> change) {
+        R result = change.get();
+        state = new State(state.values, FlatTable.copyOf(this));
+        return result;
+    }
+
+    // applies a change of one key to the Hashtable; a new key is appended to the lookup table instead of copying it
+    private synchronized <R> R publishing(Object key, Supplier<R> change) {
+        ConfigNode previous = super.get(key);
+        R result = change.get();
+        ConfigNode current = super.get(key);
+
+        if (current == previous) return result;
+        State state = this.state;
+        if (previous == null) this.state = new State(state.values, state.nodes.with((String) key, current));
+        else this.state = new State(state.values, FlatTable.copyOf(this));
+        return result;
+    }
+
     private Object getRaw(String varName) throws NoSuchElementException {
-        if (containsKey(varName)) {
-            ConfigNode configNode = get(varName);
-            return configNode.mapper.apply(configNode.get());
-        } else throw new NoSuchElementException("Variable not found: " + varName);
+        // one read of the state, so that a concurrent reload is seen entirely or not at all
+        State state = this.state;
+        ConfigNode configNode = state.nodes.get(varName);
+        if (configNode == null) throw new NoSuchElementException("Variable not found: " + varName);
+        return configNode.mapper.apply(configNode.get(state.values));
+    }
+
+    // merges the sources into one map, so that a lookup is a single probe however many sources there are
+    private Map<String, Object> readSources() throws UncheckedIOException {
+        if (sources.size() == 1) try {
+            return Collections.unmodifiableMap(sources.get(0).read());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Map<String, Object> merged = new HashMap<>();
+        for (ConfigSource source : sources) {
+            try {
+                merged.putAll(source.read());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return Collections.unmodifiableMap(merged);
     }
 
-    private void readFile(InputStream stream) throws IOException, IllegalArgumentException {
-        int r;
-        StringBuilder sb = new StringBuilder();
-        while ((r = stream.read()) != -1) sb.append((char) r);
-        dissolveNode(parseExceptional(sb.toString()), "");
+    private static ConfigSource defaultSource(String name) {
+        if (ClassLoader.getSystemResource(BASE_PATH + name) != null) return ConfigSource.resource(name);
+
+        File file = new File(BASE_PATH + name);
+        try {
+            if (!file.exists()) file.createNewFile();
+        } catch (IOException ignored) {
+        }
+        return ConfigSource.file(file);
     }
 
-    private void dissolveNode(JsonNode node, String underlying) throws IllegalArgumentException {
-        if (node.isArray()) throw new IllegalArgumentException("ArrayNodes are currently unsupported!");
-        Iterator<String> fields = node.fieldNames();
+    // reads a value of a source that only provides strings, typed like the values of a JSON file;
+    // a number is only typed if it formats back to the same text, so that values like 007 or 1.10 stay strings
+    static Object readScalar(String value) {
+        if (value.equals("true") || value.equals("false")) return Boolean.parseBoolean(value);
+        try {
+            if (INTEGRAL.matcher(value).matches()) {
+                long parsed = Long.parseLong(value);
+                if (Long.toString(parsed).equals(value))
+                    return parsed == (int) parsed ? (Object) (int) parsed : (Object) parsed;
+            } else if (DECIMAL.matcher(value).matches()) {
+                double parsed = Double.parseDouble(value);
+                if (Double.toString(parsed).equals(value)) return parsed;
+            }
+        } catch (NumberFormatException ignored) {
+            // too large for a long
+        }
+        return value;
+    }
 
-        while (fields.hasNext()) {
-            final String name = fields.next();
-            final JsonNode field = node.path(name);
-            final String path = String.format("%s%s%s", underlying, underlying.equals("") ? "" : ".", name);
+    // one buffered pass over the tokens; the keys of nested objects are joined with '.'
+    static Map<String, Object> readValues(InputStream stream) throws IOException, IllegalArgumentException {
+        Map<String, Object> values = new HashMap<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(stream)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY)
+                throw new IllegalArgumentException("ArrayNodes are currently unsupported!");
+            if (token == JsonToken.START_OBJECT) readObject(parser, new StringBuilder(), values);
+        }
+        return Collections.unmodifiableMap(values);
+    }
+
+    private static void readObject(JsonParser parser, StringBuilder path, Map<String, Object> values)
+            throws IOException {
+        final int length = path.length();
 
-            if (field.isObject()) dissolveNode(field, path);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            path.setLength(length);
+            if (length > 0) path.append('.');
+            path.append(parser.getCurrentName());
+
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) readObject(parser, path, values);
             else {
-                Object ofNode = ofNode(field);
-                if (!containsKey(path)) put(path, new ConfigNode(ofNode, Function.identity()));
+                final String key = path.toString();
+                if (!values.containsKey(key)) values.put(key, readValue(parser, token));
                 else throw new AssertionError();
             }
         }
+        path.setLength(length);
+    }
+
+    // converts values like JsonHelper#ofNode does; arrays and unsupported values are read as null
+    private static Object readValue(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+                switch (parser.getNumberType()) {
+                    case INT:
+                        return parser.getIntValue();
+                    case LONG:
+                        return parser.getLongValue();
+                    default:
+                        return null;
+                }
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                return parser.getBooleanValue();
+            case START_ARRAY:
+                parser.skipChildren();
+                return null;
+            default:
+                return null;
+        }
     }
 
     private static JsonPointer buildPointer(String from) {
         return JsonPointer.compile("/" + String.join("/", from.split(".")));
     }
 
+    private final static class State {
+        private final Map<String, Object> values;
+        private final FlatTable<ConfigNode> nodes;
+
+        private State(Map<String, Object> values, FlatTable<ConfigNode> nodes) {
+            this.values = values;
+            this.nodes = nodes;
+        }
+    }
+
     protected class ConfigNode {
-        protected final Object act;
-        protected Object def;
-        protected Function<Object, ?> mapper;
+        protected final String key;
+        protected volatile Object def;
+        protected volatile Function<Object, ?> mapper;
+        private final List<ConfigKey<?>> keys = new CopyOnWriteArrayList<>();
         private boolean lock = false;
+        private volatile boolean registered = false;
 
-        private ConfigNode(Object act, Function<Object, ?> mapper) {
-            this.act = act;
+        private ConfigNode(String key, Function<Object, ?> mapper) {
+            this.key = key;
             this.mapper = mapper;
         }
 
@@ -105,10 +554,23 @@ public class Configuration extends Hashtable<String, Configuration.ConfigNode> {
             if (lock) throw new IllegalAccessError("Node has been locked!");
             this.def = def;
             lock = true;
+            invalidate();
         }
 
-        private Object get() {
+        private Object get(Map<String, Object> values) throws NoSuchElementException {
+            Object act = values.get(key);
+            // a node that is only kept for its handles has no value once its key was removed from the file
+            if (act == null && !registered && !values.containsKey(key))
+                throw new NoSuchElementException("Variable not found: " + key);
             return act == null ? def : act;
         }
+
+        Object mapped() throws NoSuchElementException {
+            return mapper.apply(get(state.values));
+        }
+
+        private void invalidate() {
+            for (ConfigKey<?> key : keys) key.invalidate();
+        }
     }
 }
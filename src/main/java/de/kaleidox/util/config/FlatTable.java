@@ -0,0 +1,148 @@
+package de.kaleidox.util.config;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class represents an immutable hash table with string keys, stored in two flat arrays with linear probing.
+ * Lookups take no locks and follow no entry references, so concurrent readers never contend.
+ * <p>
+ * To add an entry in amortized constant time, {@link #with(String, Object)} appends it to the arrays of this table
+ * while they are at most half full, and shares them with the new table. Every entry is stored with the size of the
+ * table it was added to, so a table ignores the entries that were appended after it was created.
+ * Only the first call of {@link #with(String, Object)} on a table appends to the arrays; any other call,
+ * like a second writer that starts from the same table, copies the entries of the table into new arrays.
+ *
+ * @param <V> The type of the values.
+ */
+final class FlatTable<V> {
+    private final static FlatTable<?> EMPTY =
+            new FlatTable<>(new AtomicReferenceArray<>(1), new Object[1], new int[1], 0, new AtomicInteger());
+
+    // a key is written after its value and its rank, so a lookup that reads the key also sees them
+    private final AtomicReferenceArray<String> keys;
+    private final Object[] values;
+    // the amount of entries that were added before the entry of a slot
+    private final int[] ranks;
+    private final int size;
+    // the amount of entries in the shared arrays; a table may only append if it has all of them
+    private final AtomicInteger filled;
+
+    private FlatTable(AtomicReferenceArray<String> keys, Object[] values, int[] ranks, int size, AtomicInteger filled) {
+        this.keys = keys;
+        this.values = values;
+        this.ranks = ranks;
+        this.size = size;
+        this.filled = filled;
+    }
+
+    /**
+     * Gets the empty table.
+     *
+     * @param <V> The type of the values.
+     * @return the empty table.
+     */
+    @SuppressWarnings("unchecked")
+    static <V> FlatTable<V> empty() {
+        return (FlatTable<V>) EMPTY;
+    }
+
+    /**
+     * Creates a table with the entries of a map. Null keys and null values are skipped.
+     *
+     * @param map The map to copy; must not be modified while it is copied.
+     * @param <V> The type of the values.
+     * @return A new table.
+     */
+    static <V> FlatTable<V> copyOf(Map<String, ? extends V> map) {
+        if (map.isEmpty()) return empty();
+
+        FlatTable<V> table = allocate(map.size());
+        int size = 0;
+        for (Map.Entry<String, ? extends V> entry : map.entrySet())
+            if (entry.getKey() != null && entry.getValue() != null)
+                table.append(entry.getKey(), entry.getValue(), size++);
+
+        table.filled.set(size);
+        return table.withSize(size);
+    }
+
+    /**
+     * Creates a table with the entries of this table and a new entry. This table is not changed.
+     *
+     * @param key   The key of the entry; must not be contained.
+     * @param value The value of the entry.
+     * @return A new table.
+     */
+    FlatTable<V> with(String key, V value) {
+        // claims the next rank in the shared arrays; fails if another table appended to them already
+        if ((size + 1) * 2 <= keys.length() && filled.compareAndSet(size, size + 1)) {
+            append(key, value, size);
+            return withSize(size + 1);
+        }
+
+        FlatTable<V> table = allocate(size + 1);
+        for (int slot = 0; slot < keys.length(); slot++) {
+            String existing = keys.get(slot);
+            if (existing != null && ranks[slot] < size) table.append(existing, values[slot], ranks[slot]);
+        }
+        table.append(key, value, size);
+        table.filled.set(size + 1);
+        return table.withSize(size + 1);
+    }
+
+    /**
+     * Gets the value of a key.
+     *
+     * @param key The key to look up.
+     * @return The value of the key, or null if the key is not contained.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable V get(Object key) {
+        if (!(key instanceof String)) return null;
+
+        int mask = keys.length() - 1;
+        String existing;
+        for (int slot = slot((String) key, mask); (existing = keys.get(slot)) != null; slot = (slot + 1) & mask)
+            if (existing.equals(key)) return ranks[slot] < size ? (V) values[slot] : null;
+        return null;
+    }
+
+    /**
+     * Gets the amount of entries.
+     *
+     * @return the amount of entries.
+     */
+    int size() {
+        return size;
+    }
+
+    // at most half full after the given amount of entries, so that probe sequences stay short
+    private static <V> FlatTable<V> allocate(int entries) {
+        int capacity = Integer.highestOneBit(Math.max(entries, 1) * 4 - 1);
+        return new FlatTable<>(new AtomicReferenceArray<>(capacity), new Object[capacity], new int[capacity], 0,
+                new AtomicInteger());
+    }
+
+    // a table of the first entries of the shared arrays
+    private FlatTable<V> withSize(int size) {
+        return new FlatTable<>(keys, values, ranks, size, filled);
+    }
+
+    private void append(String key, Object value, int rank) {
+        int mask = keys.length() - 1;
+        int slot = slot(key, mask);
+        while (keys.get(slot) != null) slot = (slot + 1) & mask;
+        values[slot] = value;
+        ranks[slot] = rank;
+        keys.set(slot, key);
+    }
+
+    private static int slot(String key, int mask) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
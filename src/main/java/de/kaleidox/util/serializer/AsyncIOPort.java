@@ -0,0 +1,197 @@
+package de.kaleidox.util.serializer;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class represents an IO Port that reads and writes asynchronously, on an I/O executor.
+ * Writes are performed one after another, in the order they were submitted.
+ * If several writes are waiting while a write is performed, only the latest one is written;
+ * the others are superseded by it, and their futures complete together with it.
+ * <p>
+ * {@link #write(Object)} does not block, so a {@link PropertiesMapper} on top of this port does not wait for the file.
+ * {@link #read()} waits for all submitted writes, so it always reads what was written last.
+ * If the executor rejects a write, it is performed on the submitting thread.
+ *
+ * @param <R> The Item type to be supplied by the reader.
+ * @param <W> The Item type to be consumed by the writer.
+ */
+public class AsyncIOPort<R, W> extends IOPort<R, W> implements Closeable {
+    private final static Executor DEFAULT_EXECUTOR = defaultExecutor();
+
+    private final IOPort<R, W> port;
+    private final Executor executor;
+    private @Nullable W pendingItem;
+    private @Nullable CompletableFuture<Void> pendingWrite;
+    private CompletableFuture<Void> lastWrite = CompletableFuture.completedFuture(null);
+    private boolean writing = false;
+
+    /**
+     * Creates a new instance that uses a shared, bounded I/O executor.
+     *
+     * @param port The IO Port to read from and write to.
+     */
+    public AsyncIOPort(IOPort<R, W> port) {
+        this(port, DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param port     The IO Port to read from and write to.
+     * @param executor The executor to read and write on.
+     */
+    public AsyncIOPort(IOPort<R, W> port, Executor executor) {
+        super(null, null);
+        this.port = port;
+        this.executor = executor;
+    }
+
+    /**
+     * Gets the IO Port that is read from and written to.
+     *
+     * @return the wrapped IO Port.
+     */
+    public IOPort<R, W> getPort() {
+        return port;
+    }
+
+    /**
+     * Waits for all submitted writes, then reads on the calling thread.
+     *
+     * @return The content of the reader.
+     */
+    @Override
+    public R read() {
+        awaitWrites();
+        return port.read();
+    }
+
+    /**
+     * Reads on the I/O executor, after all writes that were submitted before have been written.
+     *
+     * @return A future that completes with the content of the reader.
+     */
+    public CompletableFuture<R> readAsync() {
+        return flush().handle((nothing, throwable) -> null)
+                .thenApplyAsync(nothing -> port.read(), executor);
+    }
+
+    /**
+     * Submits the given item to be written, without waiting for it.
+     * Failed writes are printed.
+     *
+     * @param item The item to write.
+     */
+    @Override
+    public void write(W item) {
+        writeAsync(item).exceptionally(throwable -> {
+            throwable.printStackTrace();
+            return null;
+        });
+    }
+
+    /**
+     * Submits the given item to be written.
+     * If a write is already waiting, it is superseded by the given item.
+     *
+     * @param item The item to write.
+     * @return A future that completes once the item, or an item that superseded it, is written.
+     */
+    public CompletableFuture<Void> writeAsync(W item) {
+        CompletableFuture<Void> future;
+        boolean start;
+        synchronized (this) {
+            pendingItem = item;
+            if (pendingWrite != null) return pendingWrite;
+
+            future = pendingWrite = lastWrite = new CompletableFuture<>();
+            start = !writing;
+            writing = true;
+        }
+
+        if (start) try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            drain();
+        }
+        return future;
+    }
+
+    /**
+     * Gets a future for all submitted writes.
+     *
+     * @return A future that completes once all items that were submitted so far are written.
+     */
+    public synchronized CompletableFuture<Void> flush() {
+        return lastWrite;
+    }
+
+    /**
+     * Waits for all submitted writes.
+     */
+    @Override
+    public void close() {
+        awaitWrites();
+    }
+
+    /**
+     * Writes the waiting items until no item is waiting anymore.
+     */
+    private void drain() {
+        while (true) {
+            W item;
+            CompletableFuture<Void> future;
+            synchronized (this) {
+                if (pendingWrite == null) {
+                    writing = false;
+                    return;
+                }
+                item = pendingItem;
+                future = pendingWrite;
+                pendingItem = null;
+                pendingWrite = null;
+            }
+
+            try {
+                port.write(item);
+                future.complete(null);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+
+    private void awaitWrites() {
+        try {
+            flush().join();
+        } catch (CompletionException e) {
+            // a failed write was already reported to its future; reading should still be possible
+        }
+    }
+
+    private static Executor defaultExecutor() {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        AtomicInteger counter = new AtomicInteger(0);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(256),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "AsyncIOPort Worker " + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // when the queue is full, the submitting thread performs the I/O itself
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,190 @@
+package de.kaleidox.util.serializer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * This class represents an IO Port that stores the values of a {@link PropertiesMapper} in a compact binary file.
+ * Every key and every value is stored with a length prefix, so values never need to be escaped or split,
+ * and may contain any character. The file starts with a header and ends with a CRC32 checksum of its content.
+ * Reading loads the whole file with one sequential read, verifies the checksum and decodes the strings in place.
+ * <p>
+ * A PropertiesMapper reads and writes the value lists of this port directly.
+ * When used as a plain IO Port, the values of a key are joined with {@link #SPLIT_WITH}.
+ */
+public class BinaryIOPort extends IOPort<ConcurrentHashMap<String, String>, Map<String, String>> {
+    public final static Character SPLIT_WITH = '▪';
+
+    private final static int MAGIC = 0x4B42504D;
+    private final static byte VERSION = 1;
+
+    private final File file;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param file The file to read from and write to.
+     */
+    public BinaryIOPort(File file) {
+        super(null, null);
+        this.file = file;
+    }
+
+    /**
+     * Gets the file of this port.
+     *
+     * @return the file that is read from and written to.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public ConcurrentHashMap<String, String> read() {
+        ConcurrentHashMap<String, String> map = new ConcurrentHashMap<>();
+        readLists().forEach((key, values) -> map.put(key, String.join(SPLIT_WITH.toString(), values)));
+        return map;
+    }
+
+    @Override
+    public void write(Map<String, String> item) {
+        Map<String, List<String>> lists = new HashMap<>();
+        item.forEach((key, value) -> lists.put(key, value.isEmpty()
+                ? new ArrayList<>()
+                : Arrays.asList(value.split(SPLIT_WITH.toString()))));
+        writeLists(lists);
+    }
+
+    /**
+     * Reads the value lists of all keys. Returns an empty map if the file does not exist or is empty.
+     *
+     * @return A map with the encoded values of all keys.
+     * @throws UncheckedIOException If the file could not be read, or if its checksum does not match its content.
+     */
+    public Map<String, List<String>> readLists() {
+        if (!file.exists() || file.length() == 0) return new HashMap<>();
+
+        try {
+            return readLists(Files.readAllBytes(file.toPath()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the value lists of all keys. The file is replaced atomically.
+     *
+     * @param lists A map with the encoded values of all keys.
+     * @throws UncheckedIOException If the file could not be written.
+     */
+    public void writeLists(Map<String, ? extends List<String>> lists) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            try (OutputStream fileStream = new FileOutputStream(tmp)) {
+                writeLists(fileStream, lists);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static Map<String, List<String>> readLists(byte[] content) throws IOException {
+        if (content.length < 17) throw new IOException("Not a binary mapper file");
+
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length - 8);
+        ByteBuffer in = ByteBuffer.wrap(content);
+        if (in.getLong(content.length - 8) != crc.getValue())
+            throw new IOException("Checksum mismatch; the binary mapper file is corrupted");
+
+        if (in.getInt() != MAGIC) throw new IOException("Not a binary mapper file");
+        byte version = in.get();
+        if (version != VERSION) throw new IOException("Unsupported binary mapper file version: " + version);
+
+        try {
+            int keys = in.getInt();
+            Map<String, List<String>> lists = new HashMap<>(Math.max(16, (int) (keys / .75f) + 1));
+            for (int k = 0; k < keys; k++) {
+                String key = readString(in);
+                int size = in.getInt();
+                List<String> values = new ArrayList<>(size);
+                for (int v = 0; v < size; v++) values.add(readString(in));
+                lists.put(key, values);
+            }
+            return lists;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("The binary mapper file is truncated", e);
+        }
+    }
+
+    static void writeLists(OutputStream stream, Map<String, ? extends List<String>> lists) throws IOException {
+        // the checksum is updated in bulk, when the buffer is flushed
+        CheckedOutputStream checked = new CheckedOutputStream(stream, new CRC32());
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16));
+
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(lists.size());
+        for (Map.Entry<String, ? extends List<String>> entry : lists.entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeInt(entry.getValue().size());
+            for (String value : entry.getValue()) writeString(out, value);
+        }
+
+        out.flush();
+        out.writeLong(checked.getChecksum().getValue());
+        out.flush();
+    }
+
+    static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length < 0) throw new IOException("Negative string length");
+        String str = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return str;
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) throw new IOException("Negative string length");
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void skipFully(InputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = in.skip(bytes);
+            if (skipped <= 0) throw new EOFException();
+            bytes -= skipped;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package de.kaleidox.util.serializer;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * This class represents an IO Port that stores the contents of a {@link PropertiesMapper} like
+ * {@link IOPort#mapPort(File)} does, but compressed with {@code java.util.zip}.
+ * The content is compressed while it is written and decompressed while it is read, without being buffered as a whole.
+ * Files with long, repetitive value lists usually shrink to a fraction of their size.
+ * <p>
+ * Empty content is read as an empty map, so a newly created file can be used right away.
+ */
+public class CompressedIOPort extends IOPort<ConcurrentHashMap<String, String>, Map<String, String>> {
+    private final static int BUFFER_SIZE = 8192;
+
+    private final @Nullable File file;
+    private final Supplier<InputStream> input;
+    private final @Nullable Supplier<OutputStream> output;
+    private final Format format;
+    private final int level;
+
+    /**
+     * Creates a new instance that reads from and writes to a file. The file is replaced atomically on every write.
+     *
+     * @param file   The file to read from and write to.
+     * @param format The compression format.
+     * @param level  The compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION},
+     *               or {@link Deflater#DEFAULT_COMPRESSION}.
+     * @throws IllegalArgumentException If the level is not valid.
+     */
+    public CompressedIOPort(File file, Format format, int level) {
+        this(file, () -> {
+            try {
+                return new FileInputStream(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, null, format, level);
+    }
+
+    /**
+     * Creates a new instance that reads from and writes to streams, for example of a custom storage.
+     * A new stream is obtained for every read and every write, and is closed afterwards.
+     *
+     * @param input  A supplier of a stream to read the compressed content from.
+     * @param output A supplier of a stream to write the compressed content to.
+     * @param format The compression format.
+     * @param level  The compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION},
+     *               or {@link Deflater#DEFAULT_COMPRESSION}.
+     * @throws IllegalArgumentException If the level is not valid.
+     */
+    public CompressedIOPort(Supplier<InputStream> input, Supplier<OutputStream> output, Format format, int level) {
+        this(null, input, output, format, level);
+    }
+
+    private CompressedIOPort(@Nullable File file, Supplier<InputStream> input, @Nullable Supplier<OutputStream> output,
+                             Format format, int level) {
+        super(null, null);
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION))
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+
+        this.file = file;
+        this.input = input;
+        this.output = output;
+        this.format = format;
+        this.level = level;
+    }
+
+    /**
+     * Gets the compression format.
+     *
+     * @return the format the content is compressed with.
+     */
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Gets the compression level.
+     *
+     * @return the level the content is compressed with.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Reads and decompresses the content.
+     *
+     * @return A map with the entries of the content; empty if the content is empty.
+     * @throws UncheckedIOException If the content could not be read or decompressed.
+     */
+    @Override
+    public ConcurrentHashMap<String, String> read() {
+        if (file != null && (!file.exists() || file.length() == 0)) return new ConcurrentHashMap<>();
+
+        try (PushbackInputStream stream = new PushbackInputStream(new BufferedInputStream(input.get(), BUFFER_SIZE))) {
+            int first = stream.read();
+            if (first == -1) return new ConcurrentHashMap<>();
+            stream.unread(first);
+
+            return readMap(format == Format.GZIP
+                    ? new GZIPInputStream(stream, BUFFER_SIZE)
+                    : new InflaterInputStream(stream));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Compresses and writes the given entries, replacing the previous content.
+     *
+     * @param item The entries to write.
+     * @throws UncheckedIOException If the content could not be written.
+     */
+    @Override
+    public void write(Map<String, String> item) {
+        try {
+            if (file == null) {
+                writeCompressed(output.get(), item);
+                return;
+            }
+
+            File tmp = new File(file.getPath() + ".tmp");
+            writeCompressed(new FileOutputStream(tmp), item);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeCompressed(OutputStream target, Map<String, String> item) throws IOException {
+        // the target is closed as well if a compressing stream or the deflater cannot be created
+        try (OutputStream buffered = new BufferedOutputStream(target, BUFFER_SIZE)) {
+            if (format == Format.GZIP) {
+                try (OutputStream stream = new GZIPOutputStream(buffered, BUFFER_SIZE) {
+                    {
+                        def.setLevel(level);
+                    }
+                }) {
+                    writeMap(stream, item);
+                }
+                return;
+            }
+
+            Deflater deflater = new Deflater(level);
+            try (OutputStream stream = new DeflaterOutputStream(buffered, deflater, BUFFER_SIZE)) {
+                writeMap(stream, item);
+            } finally {
+                // a deflater that was passed to the stream is not released by it
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * The formats that the content can be compressed with.
+     */
+    public enum Format {
+        /**
+         * The zlib format, as written by {@link DeflaterOutputStream}.
+         */
+        DEFLATE,
+
+        /**
+         * The gzip format, as written by {@link GZIPOutputStream}; can also be read with common gzip tools.
+         */
+        GZIP
+    }
+}
@@ -1,21 +1,32 @@
 package de.kaleidox.util.serializer;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This clas represents an Read/Write bridge to read and write from/to a file.
@@ -53,13 +64,65 @@ public class IOPort<R, W> {
      * @param supplier  A supplier to provide a list to fill.
      * @param splitWith A regex to split the content apart.
      * @return A collection that contains the split items.
+     * @see #readAsStream(String)
      */
     public <T extends Collection<String>> Collection<String> readAsCollection(Supplier<T> supplier, String splitWith) {
-        return new ArrayList<>(Arrays.asList(
-                reader
-                        .get()
-                        .toString()
-                        .split(splitWith)));
+        try (Stream<String> records = readAsStream(splitWith)) {
+            return records.collect(Collectors.toCollection(supplier));
+        }
+    }
+
+    /**
+     * Reads the content of the reader as a lazy stream; splitting by the regex defined in {@code splitWith}.
+     * The items are the same as those of {@link String#split(String)}.
+     * If the reader supplies a {@link Reader}, an {@link InputStream}, a {@link File} or a {@link Path},
+     * the content is read in chunks while the stream is consumed; otherwise, its {@code toString()} is split.
+     * Closing the stream closes the underlying reader.
+     *
+     * @param splitWith A regex to split the content apart.
+     * @return A stream of the split items.
+     * @throws UncheckedIOException If the content could not be read.
+     */
+    public Stream<String> readAsStream(String splitWith) {
+        R content = read();
+
+        Reader reader;
+        try {
+            if (content instanceof Reader) reader = (Reader) content;
+            else if (content instanceof InputStream)
+                reader = new InputStreamReader((InputStream) content, StandardCharsets.UTF_8);
+            else if (content instanceof File)
+                reader = Files.newBufferedReader(((File) content).toPath(), StandardCharsets.UTF_8);
+            else if (content instanceof Path) reader = Files.newBufferedReader((Path) content, StandardCharsets.UTF_8);
+            else reader = new StringReader(String.valueOf(content));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return streamRecords(reader, splitWith);
+    }
+
+    /**
+     * Reads the content of a reader as a lazy stream; splitting by the regex defined in {@code splitWith}.
+     * The items are the same as those of {@link String#split(String)}, but the content is read in chunks,
+     * so only the current item is held in memory. Regexes without special characters are searched for literally.
+     * Closing the stream closes the reader.
+     *
+     * @param reader    The reader to read from.
+     * @param splitWith A regex to split the content apart.
+     * @return A stream of the split items.
+     */
+    public static Stream<String> streamRecords(Reader reader, String splitWith) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                new RecordIterator(reader, splitWith, 8192),
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
     }
 
     /**
@@ -73,16 +136,33 @@ public class IOPort<R, W> {
 
     /**
      * Poses a fitting IO Port for a {@link PropertiesMapper}.
+     * The file is opened for every read and write; every write replaces the whole content of the file.
      *
      * @param file A file to fit the IO Port to.
      * @return An IO Port to be used by a {@link PropertiesMapper}.
      */
     public static IOPort<ConcurrentHashMap<String, String>, Map<String, String>> mapPort(File file) {
-        try {
-            return mapPort(new FileInputStream(file), new FileOutputStream(file));
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException(e);
-        }
+        return new IOPort<>(
+                () -> {
+                    try (InputStream iStream = new BufferedInputStream(new FileInputStream(file))) {
+                        return readMap(iStream);
+                    } catch (FileNotFoundException e) {
+                        throw new RuntimeException(e);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        return new ConcurrentHashMap<>();
+                    }
+                },
+                item -> {
+                    try (OutputStream oStream = new BufferedOutputStream(new FileOutputStream(file))) {
+                        writeMap(oStream, item);
+                    } catch (FileNotFoundException e) {
+                        throw new RuntimeException(e);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+        );
     }
 
     /**
@@ -96,32 +176,40 @@ public class IOPort<R, W> {
                                                                                          OutputStream oStream) {
         return new IOPort<>(
                 () -> {
-                    Properties props = new Properties();
-                    ConcurrentHashMap<String, String> map = new ConcurrentHashMap<>();
-
                     try {
-                        props.load(iStream);
+                        return readMap(iStream);
                     } catch (IOException e2) {
                         e2.printStackTrace();
+                        return new ConcurrentHashMap<>();
                     }
-
-                    props.forEach((key, value) -> map.put(key.toString(), value.toString()));
-
-                    return map;
                 },
                 item -> {
-                    Properties props = new Properties();
-
-                    for (Map.Entry<String, String> entry : item.entrySet()) {
-                        props.put(entry.getKey(), entry.getValue());
-                    }
-
                     try {
-                        props.store(oStream, null);
+                        writeMap(oStream, item);
                     } catch (IOException e) {
                         e.printStackTrace();
                     }
                 }
         );
     }
+
+    static ConcurrentHashMap<String, String> readMap(InputStream iStream) throws IOException {
+        Properties props = new Properties();
+        ConcurrentHashMap<String, String> map = new ConcurrentHashMap<>();
+
+        props.load(iStream);
+        props.forEach((key, value) -> map.put(key.toString(), value.toString()));
+
+        return map;
+    }
+
+    static void writeMap(OutputStream oStream, Map<String, String> item) throws IOException {
+        Properties props = new Properties();
+
+        for (Map.Entry<String, String> entry : item.entrySet()) {
+            props.put(entry.getKey(), entry.getValue());
+        }
+
+        props.store(oStream, null);
+    }
 }
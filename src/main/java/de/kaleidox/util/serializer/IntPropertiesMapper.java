@@ -0,0 +1,270 @@
+package de.kaleidox.util.serializer;
+
+import org.jetbrains.annotations.Nullable;
+
+import de.kaleidox.util.functional.DoubleFunction;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class represents a PropertiesMapper with {@code int} values.
+ * The values of every key are stored in an {@link IntList}, which is backed by a growable {@code int[]};
+ * values are parsed from and formatted to the file without being boxed.
+ * Use {@link #getInt(Object, int)} and {@link IntList#getInt(int)} to read values without boxing.
+ * In concurrent mode, the lists are copy-on-write.
+ *
+ * @param <K> The type of the keys.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class IntPropertiesMapper<K> extends PrimitivePropertiesMapper<K, Integer, int[]> {
+    /**
+     * Creates a new instance.
+     *
+     * @param file        A file to read from. Must be a {@code .properties} file.
+     * @param keyFunction A DoubleFunction to convert the keys.
+     */
+    public IntPropertiesMapper(File file, DoubleFunction<String, K> keyFunction) {
+        super(file, keyFunction, DoubleFunction.STRING_INTEGER);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param ioPort      The IOPort to read and write from.
+     * @param splitWith   A Nullable custom Character to split the entries in the file with.
+     * @param keyFunction A DoubleFunction to convert the keys.
+     */
+    public IntPropertiesMapper(
+            IOPort<ConcurrentHashMap<String, String>, Map<String, String>> ioPort,
+            @Nullable Character splitWith,
+            DoubleFunction<String, K> keyFunction) {
+        super(ioPort, splitWith, keyFunction, DoubleFunction.STRING_INTEGER);
+    }
+
+    /**
+     * Gets the value in the list without boxing it.
+     *
+     * @param key   The key to look at.
+     * @param index The index of the value to get.
+     * @return the value at the given index.
+     * @throws IndexOutOfBoundsException If the index out of the Lists range.
+     */
+    public int getInt(K key, int index) {
+        return ((IntList) provideList(key)).getInt(index);
+    }
+
+    /**
+     * Gets a value in the list without boxing it, if available; otherwise returns an absence value.
+     *
+     * @param key           The key to look at.
+     * @param index         The index of the value to get.
+     * @param valueIfAbsent The value to return if the element is not available.
+     * @return the value at the given index, otherwise the absence value.
+     */
+    public int getIntOrDefault(K key, int index, int valueIfAbsent) {
+        IntList list = (IntList) get(key);
+        if (list == null || index < 0) return valueIfAbsent;
+
+        // one read of the array, so that a concurrent writer cannot shrink the list between the check and the read
+        int[] values = list.values();
+        return index < list.size(values) ? values[index] : valueIfAbsent;
+    }
+
+    /**
+     * Copies the values of a key into a new array.
+     *
+     * @param key The key to look at.
+     * @return A new array with the values of the key; empty if the key is not contained.
+     */
+    public int[] toIntArray(K key) {
+        IntList list = (IntList) get(key);
+        if (list == null) return new int[0];
+
+        synchronized (lockFor(key)) {
+            return list.toIntArray();
+        }
+    }
+
+    @Override
+    IntList emptyList(int capacity) {
+        return new IntList(capacity);
+    }
+
+    /**
+     * This class represents a list of {@code int} values, backed by a growable array.
+     * The methods of {@link List} box and unbox the values; the {@code Int}-suffixed methods do not.
+     * Like {@link java.util.ArrayList}, this class is not synchronized, and does not permit {@code null} values;
+     * the lists of a mapper in concurrent mode are copy-on-write instead.
+     */
+    public static class IntList extends PrimitiveList<Integer, int[]> {
+        /**
+         * Creates a new, empty instance.
+         */
+        public IntList() {
+            this(10);
+        }
+
+        /**
+         * Creates a new, empty instance.
+         *
+         * @param capacity The initial capacity.
+         */
+        public IntList(int capacity) {
+            this(new int[capacity], 0, false);
+        }
+
+        /**
+         * Creates a new instance with the given values.
+         *
+         * @param values The initial values.
+         */
+        public IntList(Collection<Integer> values) {
+            this(values.size());
+            for (Integer value : values) addInt(value);
+        }
+
+        private IntList(int[] values, int size, boolean copyOnWrite) {
+            super(values, size, copyOnWrite);
+        }
+
+        /**
+         * Gets the value at a position without boxing it.
+         *
+         * @param index The index of the value.
+         * @return the value at the given index.
+         * @throws IndexOutOfBoundsException If the index out of the Lists range.
+         */
+        public int getInt(int index) {
+            return readable(index)[index];
+        }
+
+        /**
+         * Sets the value at a position without boxing it.
+         *
+         * @param index The index to set at.
+         * @param value The value to set.
+         * @return the value that was previously at the given index.
+         * @throws IndexOutOfBoundsException If the index out of the Lists range.
+         */
+        public int setInt(int index, int value) {
+            int[] values = writable(index);
+            int previous = values[index];
+            values[index] = value;
+            written(values);
+            return previous;
+        }
+
+        /**
+         * Appends a value without boxing it.
+         *
+         * @param value The value to append.
+         * @return true.
+         */
+        public boolean addInt(int value) {
+            int index = size();
+            int[] values = insertable(index);
+            values[index] = value;
+            inserted(values);
+            return true;
+        }
+
+        /**
+         * Gets the index of the first occurrence of a value.
+         *
+         * @param value The value to look for.
+         * @return the index of the value, or -1 if this list does not contain it.
+         */
+        public int indexOfInt(int value) {
+            int[] values = values();
+            for (int i = 0, size = size(values); i < size; i++) if (values[i] == value) return i;
+            return -1;
+        }
+
+        /**
+         * Gets the index of the last occurrence of a value.
+         *
+         * @param value The value to look for.
+         * @return the index of the value, or -1 if this list does not contain it.
+         */
+        public int lastIndexOfInt(int value) {
+            int[] values = values();
+            for (int i = size(values) - 1; i >= 0; i--) if (values[i] == value) return i;
+            return -1;
+        }
+
+        /**
+         * Checks whether this list contains a value.
+         *
+         * @param value The value to look for.
+         * @return whether this list contains the value.
+         */
+        public boolean containsInt(int value) {
+            return indexOfInt(value) != -1;
+        }
+
+        /**
+         * Copies the values of this list into a new array.
+         *
+         * @return A new array with the values of this list.
+         */
+        public int[] toIntArray() {
+            int[] values = values();
+            return Arrays.copyOf(values, size(values));
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            return o instanceof Integer ? indexOfInt((Integer) o) : -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            return o instanceof Integer ? lastIndexOfInt((Integer) o) : -1;
+        }
+
+        @Override
+        IntList create(int[] values, int size, boolean copyOnWrite) {
+            return new IntList(values, size, copyOnWrite);
+        }
+
+        @Override
+        int length(int[] values) {
+            return values.length;
+        }
+
+        @Override
+        int[] copyOf(int[] values, int length) {
+            return Arrays.copyOf(values, length);
+        }
+
+        @Override
+        Integer box(int[] values, int index) {
+            return values[index];
+        }
+
+        @Override
+        void unbox(int[] values, int index, Integer value) {
+            values[index] = value;
+        }
+
+        @Override
+        void addParsed(String value) {
+            addInt(Integer.parseInt(value));
+        }
+
+        @Override
+        String format(int[] values, int index) {
+            return Integer.toString(values[index]);
+        }
+
+        @Override
+        void appendTo(StringBuilder sb, int[] values, int index) {
+            sb.append(values[index]);
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package de.kaleidox.util.serializer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class represents an IO Port for a {@link PropertiesMapper} that appends every mutation as a small record
+ * to a journal file, instead of rewriting the whole map.
+ * The journal is periodically compacted into a snapshot file in the background.
+ * Reading replays the snapshot and then the tail of the journal.
+ * <p>
+ * The mapper using this port must use the same splitter character as the port.
+ */
+public class JournalIOPort extends IOPort<ConcurrentHashMap<String, String>, Map<String, String>> implements Closeable {
+    public final static int DEFAULT_COMPACT_THRESHOLD = 10000;
+
+    private final static int MAGIC = 0x4B4A524E;
+    private final static long HEADER_LENGTH = 12;
+    private final static byte OP_ADD = 1;
+    private final static byte OP_SET = 2;
+    private final static byte OP_REMOVE = 3;
+    private final static byte OP_REMOVE_KEY = 4;
+    private final static byte OP_REMOVE_VALUES = 5;
+
+    private final File snapshotFile;
+    private final File journalFile;
+    private final Character splitWith;
+    private final int compactThreshold;
+    private final ScheduledExecutorService compactor;
+    private DataOutputStream journal;
+    private long generation;
+    private int records;
+    private boolean compacting = false;
+    private boolean closed = false;
+
+    /**
+     * Creates a new instance with a compaction check every 30 seconds.
+     *
+     * @param file      The snapshot file. The journal is stored next to it, with a {@code .journal} suffix.
+     * @param splitWith The splitter character of the mapper that uses this port.
+     */
+    public JournalIOPort(File file, Character splitWith) {
+        this(file, splitWith, DEFAULT_COMPACT_THRESHOLD, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param file             The snapshot file. The journal is stored next to it, with a {@code .journal} suffix.
+     * @param splitWith        The splitter character of the mapper that uses this port.
+     * @param compactThreshold The amount of journal records after which the journal gets compacted.
+     * @param checkInterval    The interval to check whether the journal needs compaction in.
+     * @param unit             The unit of the interval.
+     */
+    public JournalIOPort(File file, Character splitWith, int compactThreshold, long checkInterval, TimeUnit unit) {
+        super(null, null);
+        this.snapshotFile = file;
+        this.journalFile = new File(file.getPath() + ".journal");
+        this.splitWith = splitWith;
+        this.compactThreshold = compactThreshold;
+        this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "JournalIOPort Compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        compactor.scheduleWithFixedDelay(() -> {
+            if (getRecordCount() >= compactThreshold) compact();
+        }, checkInterval, checkInterval, unit);
+    }
+
+    /**
+     * Gets the splitter character.
+     *
+     * @return the character that the values in the maps of this port are being split with.
+     */
+    public Character getSplitWith() {
+        return splitWith;
+    }
+
+    /**
+     * Gets the amount of records in the journal since the last compaction.
+     *
+     * @return the amount of journal records.
+     */
+    public synchronized int getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Replays the snapshot and the journal.
+     *
+     * @return A map with all joined values of all keys.
+     */
+    @Override
+    public synchronized ConcurrentHashMap<String, String> read() {
+        try {
+            Replay replay = openJournal();
+            Map<String, List<String>> state = (replay == null ? replay(Long.MAX_VALUE) : replay).state;
+            ConcurrentHashMap<String, String> map = new ConcurrentHashMap<>();
+            state.forEach((key, values) -> map.put(key, String.join(splitWith.toString(), values)));
+            return map;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a new snapshot of the given map, and starts a new, empty journal.
+     *
+     * @param item The map to write.
+     */
+    @Override
+    public synchronized void write(Map<String, String> item) {
+        Map<String, List<String>> state = new HashMap<>();
+        item.forEach((key, value) -> state.put(key, value.isEmpty()
+                ? new ArrayList<>()
+                : new ArrayList<>(Arrays.asList(value.split(splitWith.toString())))));
+
+        try {
+            openJournal();
+            closeJournal();
+            File tmp = new File(snapshotFile.getPath() + ".tmp");
+            // the new journal starts at the next generation; the snapshot covers the whole current one
+            writeSnapshot(tmp, state, generation + 1, 0);
+            Files.move(tmp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            startJournal(generation + 1, null, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends a record for a value that was added to the end of a key's list.
+     *
+     * @param key   The encoded key.
+     * @param value The encoded value.
+     */
+    public synchronized void appendAdd(String key, String value) {
+        append(OP_ADD, key, -1, value);
+    }
+
+    /**
+     * Appends a record for a value that was set at an index of a key's list.
+     *
+     * @param key   The encoded key.
+     * @param index The index the value was set at.
+     * @param value The encoded value.
+     */
+    public synchronized void appendSet(String key, int index, String value) {
+        append(OP_SET, key, index, value);
+    }
+
+    /**
+     * Appends a record for a value that was removed from a key's list.
+     *
+     * @param key   The encoded key.
+     * @param value The encoded value.
+     */
+    public synchronized void appendRemove(String key, String value) {
+        append(OP_REMOVE, key, -1, value);
+    }
+
+    /**
+     * Appends a record for a key that was removed.
+     *
+     * @param key The encoded key.
+     */
+    public synchronized void appendRemoveKey(String key) {
+        append(OP_REMOVE_KEY, key, -1, null);
+    }
+
+    /**
+     * Appends a record for a value that was removed from the lists of all keys.
+     *
+     * @param value The encoded value.
+     */
+    public synchronized void appendRemoveValues(String value) {
+        append(OP_REMOVE_VALUES, null, -1, value);
+    }
+
+    /**
+     * Compacts the journal into the snapshot.
+     * The records are replayed without holding the lock of this port;
+     * only the records that were appended in the meantime are copied while appending is halted.
+     * Does nothing once this port was closed, also if it is closed while the records are replayed.
+     */
+    public void compact() {
+        long gen, offset;
+        synchronized (this) {
+            if (compacting || closed) return;
+            try {
+                openJournal();
+                journal.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            compacting = true;
+            gen = generation;
+            offset = journalFile.length();
+        }
+
+        File tmp = new File(snapshotFile.getPath() + ".compact");
+        try {
+            writeSnapshot(tmp, replay(offset).state, gen, offset);
+
+            synchronized (this) {
+                // closed, or a full write happened in the meantime
+                if (closed || gen != generation) return;
+
+                journal.flush();
+                byte[] tail;
+                try (RandomAccessFile raf = new RandomAccessFile(journalFile, "r")) {
+                    tail = new byte[(int) (raf.length() - offset)];
+                    raf.seek(offset);
+                    raf.readFully(tail);
+                }
+                int tailRecords = countRecords(tail);
+
+                closeJournal();
+                Files.move(tmp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                startJournal(gen + 1, tail, tailRecords);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Stops background compaction and closes the journal.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        compactor.shutdown();
+        try {
+            closeJournal();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void append(byte op, String key, int index, String value) {
+        try {
+            openJournal();
+            journal.writeByte(op);
+            if (key != null) BinaryIOPort.writeString(journal, key);
+            if (op == OP_SET) journal.writeInt(index);
+            if (value != null) BinaryIOPort.writeString(journal, value);
+            journal.flush();
+            records++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Replay openJournal() throws IOException {
+        if (journal != null) return null;
+
+        Replay replay = replay(Long.MAX_VALUE);
+        if (!journalFile.exists()) {
+            startJournal(replay.generation, null, 0);
+            return replay;
+        }
+
+        // cut off a record that was not completely written, so that new records can be read again
+        if (replay.position < journalFile.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+                raf.setLength(replay.position);
+            }
+        }
+        generation = replay.generation;
+        records = replay.records;
+        journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile, true)));
+        return replay;
+    }
+
+    private void startJournal(long gen, byte[] tail, int tailRecords) throws IOException {
+        File tmp = new File(journalFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+            out.writeInt(MAGIC);
+            out.writeLong(gen);
+            if (tail != null) out.write(tail);
+        }
+        Files.move(tmp.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        generation = gen;
+        records = tailRecords;
+        journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile, true)));
+    }
+
+    private void closeJournal() throws IOException {
+        if (journal == null) return;
+        journal.close();
+        journal = null;
+    }
+
+    private Replay replay(long until) throws IOException {
+        Replay replay = new Replay();
+        long snapshotOffset = 0;
+
+        if (snapshotFile.exists() && snapshotFile.length() > 0) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+                if (in.readInt() != MAGIC) throw new IOException("Not a journal snapshot: " + snapshotFile);
+                replay.generation = in.readLong();
+                snapshotOffset = in.readLong();
+                int keys = in.readInt();
+                for (int k = 0; k < keys; k++) {
+                    String key = BinaryIOPort.readString(in);
+                    int size = in.readInt();
+                    List<String> values = new ArrayList<>(size);
+                    for (int v = 0; v < size; v++) values.add(BinaryIOPort.readString(in));
+                    replay.state.put(key, values);
+                }
+            }
+        }
+
+        if (!journalFile.exists()) return replay;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a journal: " + journalFile);
+            long journalGen = in.readLong();
+            replay.position = HEADER_LENGTH;
+
+            // an older journal is entirely contained in the snapshot
+            if (journalGen < replay.generation) return replay;
+            // after an interrupted compaction, the snapshot already contains the start of the journal
+            if (journalGen == replay.generation && snapshotOffset > HEADER_LENGTH) {
+                BinaryIOPort.skipFully(in, snapshotOffset - HEADER_LENGTH);
+                replay.position = snapshotOffset;
+            }
+            replay.generation = journalGen;
+
+            try {
+                while (replay.position < until) {
+                    byte op = in.readByte();
+                    String key = op == OP_REMOVE_VALUES ? null : BinaryIOPort.readString(in);
+                    int index = op == OP_SET ? in.readInt() : -1;
+                    String value = op == OP_REMOVE_KEY ? null : BinaryIOPort.readString(in);
+
+                    apply(replay.state, op, key, index, value);
+                    replay.position += 1
+                            + (key == null ? 0 : 4 + key.getBytes(StandardCharsets.UTF_8).length)
+                            + (op == OP_SET ? 4 : 0)
+                            + (value == null ? 0 : 4 + value.getBytes(StandardCharsets.UTF_8).length);
+                    replay.records++;
+                }
+            } catch (EOFException ignored) {
+                // end of the journal, or a record that was not completely written
+            }
+        }
+
+        return replay;
+    }
+
+    private static int countRecords(byte[] records) throws IOException {
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(records))) {
+            while (in.available() > 0) {
+                byte op = in.readByte();
+                if (op != OP_REMOVE_VALUES) BinaryIOPort.skipFully(in, in.readInt());
+                if (op == OP_SET) BinaryIOPort.skipFully(in, 4);
+                if (op != OP_REMOVE_KEY) BinaryIOPort.skipFully(in, in.readInt());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void apply(Map<String, List<String>> state, byte op, String key, int index, String value) {
+        switch (op) {
+            case OP_ADD:
+                state.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+                break;
+            case OP_SET:
+                List<String> list = state.computeIfAbsent(key, k -> new ArrayList<>());
+                if (index < list.size()) list.set(index, value);
+                break;
+            case OP_REMOVE:
+                if (state.containsKey(key)) state.get(key).remove(value);
+                break;
+            case OP_REMOVE_KEY:
+                state.remove(key);
+                break;
+            case OP_REMOVE_VALUES:
+                state.values().forEach(values -> values.remove(value));
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type: " + op);
+        }
+    }
+
+    private static void writeSnapshot(File file, Map<String, List<String>> state, long gen, long offset)
+            throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(gen);
+            out.writeLong(offset);
+            out.writeInt(state.size());
+            for (Map.Entry<String, List<String>> entry : state.entrySet()) {
+                BinaryIOPort.writeString(out, entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (String value : entry.getValue()) BinaryIOPort.writeString(out, value);
+            }
+        }
+    }
+
+    private static class Replay {
+        private final Map<String, List<String>> state = new HashMap<>();
+        private long generation = 0;
+        private long position = 0;
+        private int records = 0;
+    }
+}
@@ -0,0 +1,192 @@
+package de.kaleidox.util.serializer;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * This class represents the values of a key of a lazy {@link PropertiesMapper}.
+ * It keeps the values in the form they were loaded from the file, and decodes them on first access.
+ * Once decoded, the raw form is dropped and every call is forwarded to the decoded list.
+ *
+ * @param <R> The type of the raw values, as they were loaded from the file.
+ * @param <V> The value type.
+ */
+class LazyList<R, V> extends AbstractList<V> implements RandomAccess {
+    private final Function<R, List<V>> decoder;
+    private @Nullable R raw;
+    private volatile @Nullable List<V> decoded;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param raw     The raw values, as they were loaded from the file.
+     * @param decoder A function to decode the raw values with.
+     */
+    LazyList(R raw, Function<R, List<V>> decoder) {
+        this.raw = raw;
+        this.decoder = decoder;
+    }
+
+    /**
+     * Gets the raw values, if they were not decoded yet.
+     *
+     * @return the raw values, or null if they were already decoded.
+     */
+    synchronized @Nullable R getRaw() {
+        return raw;
+    }
+
+    /**
+     * Checks whether the raw values were decoded already.
+     *
+     * @return whether the raw values were decoded.
+     */
+    boolean isDecoded() {
+        return decoded != null;
+    }
+
+    /**
+     * Gets the decoded list, and decodes the raw values if this was not done yet.
+     *
+     * @return the decoded list.
+     */
+    List<V> decoded() {
+        List<V> list = decoded;
+        if (list != null) return list;
+
+        synchronized (this) {
+            if (decoded == null) {
+                decoded = decoder.apply(raw);
+                raw = null;
+            }
+            return decoded;
+        }
+    }
+
+    @Override
+    public V get(int index) {
+        return decoded().get(index);
+    }
+
+    @Override
+    public V set(int index, V element) {
+        return decoded().set(index, element);
+    }
+
+    @Override
+    public boolean add(V element) {
+        return decoded().add(element);
+    }
+
+    @Override
+    public void add(int index, V element) {
+        decoded().add(index, element);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends V> c) {
+        return decoded().addAll(c);
+    }
+
+    @Override
+    public V remove(int index) {
+        return decoded().remove(index);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return decoded().remove(o);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super V> filter) {
+        return decoded().removeIf(filter);
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<V> operator) {
+        decoded().replaceAll(operator);
+    }
+
+    @Override
+    public void sort(Comparator<? super V> c) {
+        decoded().sort(c);
+    }
+
+    @Override
+    public void clear() {
+        decoded().clear();
+    }
+
+    @Override
+    public int size() {
+        return decoded().size();
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return decoded().indexOf(o);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return decoded().lastIndexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return decoded().contains(o);
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return decoded().iterator();
+    }
+
+    @Override
+    public ListIterator<V> listIterator() {
+        return decoded().listIterator();
+    }
+
+    @Override
+    public ListIterator<V> listIterator(int index) {
+        return decoded().listIterator(index);
+    }
+
+    @Override
+    public List<V> subList(int fromIndex, int toIndex) {
+        return decoded().subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public Spliterator<V> spliterator() {
+        return decoded().spliterator();
+    }
+
+    @Override
+    public void forEach(Consumer<? super V> action) {
+        decoded().forEach(action);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return decoded().toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return decoded().toArray(a);
+    }
+}
@@ -0,0 +1,270 @@
+package de.kaleidox.util.serializer;
+
+import org.jetbrains.annotations.Nullable;
+
+import de.kaleidox.util.functional.DoubleFunction;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class represents a PropertiesMapper with {@code long} values.
+ * The values of every key are stored in a {@link LongList}, which is backed by a growable {@code long[]};
+ * values are parsed from and formatted to the file without being boxed.
+ * Use {@link #getLong(Object, int)} and {@link LongList#getLong(int)} to read values without boxing.
+ * In concurrent mode, the lists are copy-on-write.
+ *
+ * @param <K> The type of the keys.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class LongPropertiesMapper<K> extends PrimitivePropertiesMapper<K, Long, long[]> {
+    /**
+     * Creates a new instance.
+     *
+     * @param file        A file to read from. Must be a {@code .properties} file.
+     * @param keyFunction A DoubleFunction to convert the keys.
+     */
+    public LongPropertiesMapper(File file, DoubleFunction<String, K> keyFunction) {
+        super(file, keyFunction, DoubleFunction.STRING_LONG);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param ioPort      The IOPort to read and write from.
+     * @param splitWith   A Nullable custom Character to split the entries in the file with.
+     * @param keyFunction A DoubleFunction to convert the keys.
+     */
+    public LongPropertiesMapper(
+            IOPort<ConcurrentHashMap<String, String>, Map<String, String>> ioPort,
+            @Nullable Character splitWith,
+            DoubleFunction<String, K> keyFunction) {
+        super(ioPort, splitWith, keyFunction, DoubleFunction.STRING_LONG);
+    }
+
+    /**
+     * Gets the value in the list without boxing it.
+     *
+     * @param key   The key to look at.
+     * @param index The index of the value to get.
+     * @return the value at the given index.
+     * @throws IndexOutOfBoundsException If the index out of the Lists range.
+     */
+    public long getLong(K key, int index) {
+        return ((LongList) provideList(key)).getLong(index);
+    }
+
+    /**
+     * Gets a value in the list without boxing it, if available; otherwise returns an absence value.
+     *
+     * @param key           The key to look at.
+     * @param index         The index of the value to get.
+     * @param valueIfAbsent The value to return if the element is not available.
+     * @return the value at the given index, otherwise the absence value.
+     */
+    public long getLongOrDefault(K key, int index, long valueIfAbsent) {
+        LongList list = (LongList) get(key);
+        if (list == null || index < 0) return valueIfAbsent;
+
+        // one read of the array, so that a concurrent writer cannot shrink the list between the check and the read
+        long[] values = list.values();
+        return index < list.size(values) ? values[index] : valueIfAbsent;
+    }
+
+    /**
+     * Copies the values of a key into a new array.
+     *
+     * @param key The key to look at.
+     * @return A new array with the values of the key; empty if the key is not contained.
+     */
+    public long[] toLongArray(K key) {
+        LongList list = (LongList) get(key);
+        if (list == null) return new long[0];
+
+        synchronized (lockFor(key)) {
+            return list.toLongArray();
+        }
+    }
+
+    @Override
+    LongList emptyList(int capacity) {
+        return new LongList(capacity);
+    }
+
+    /**
+     * This class represents a list of {@code long} values, backed by a growable array.
+     * The methods of {@link List} box and unbox the values; the {@code Long}-suffixed methods do not.
+     * Like {@link java.util.ArrayList}, this class is not synchronized, and does not permit {@code null} values;
+     * the lists of a mapper in concurrent mode are copy-on-write instead.
+     */
+    public static class LongList extends PrimitiveList<Long, long[]> {
+        /**
+         * Creates a new, empty instance.
+         */
+        public LongList() {
+            this(10);
+        }
+
+        /**
+         * Creates a new, empty instance.
+         *
+         * @param capacity The initial capacity.
+         */
+        public LongList(int capacity) {
+            this(new long[capacity], 0, false);
+        }
+
+        /**
+         * Creates a new instance with the given values.
+         *
+         * @param values The initial values.
+         */
+        public LongList(Collection<Long> values) {
+            this(values.size());
+            for (Long value : values) addLong(value);
+        }
+
+        private LongList(long[] values, int size, boolean copyOnWrite) {
+            super(values, size, copyOnWrite);
+        }
+
+        /**
+         * Gets the value at a position without boxing it.
+         *
+         * @param index The index of the value.
+         * @return the value at the given index.
+         * @throws IndexOutOfBoundsException If the index out of the Lists range.
+         */
+        public long getLong(int index) {
+            return readable(index)[index];
+        }
+
+        /**
+         * Sets the value at a position without boxing it.
+         *
+         * @param index The index to set at.
+         * @param value The value to set.
+         * @return the value that was previously at the given index.
+         * @throws IndexOutOfBoundsException If the index out of the Lists range.
+         */
+        public long setLong(int index, long value) {
+            long[] values = writable(index);
+            long previous = values[index];
+            values[index] = value;
+            written(values);
+            return previous;
+        }
+
+        /**
+         * Appends a value without boxing it.
+         *
+         * @param value The value to append.
+         * @return true.
+         */
+        public boolean addLong(long value) {
+            int index = size();
+            long[] values = insertable(index);
+            values[index] = value;
+            inserted(values);
+            return true;
+        }
+
+        /**
+         * Gets the index of the first occurrence of a value.
+         *
+         * @param value The value to look for.
+         * @return the index of the value, or -1 if this list does not contain it.
+         */
+        public int indexOfLong(long value) {
+            long[] values = values();
+            for (int i = 0, size = size(values); i < size; i++) if (values[i] == value) return i;
+            return -1;
+        }
+
+        /**
+         * Gets the index of the last occurrence of a value.
+         *
+         * @param value The value to look for.
+         * @return the index of the value, or -1 if this list does not contain it.
+         */
+        public int lastIndexOfLong(long value) {
+            long[] values = values();
+            for (int i = size(values) - 1; i >= 0; i--) if (values[i] == value) return i;
+            return -1;
+        }
+
+        /**
+         * Checks whether this list contains a value.
+         *
+         * @param value The value to look for.
+         * @return whether this list contains the value.
+         */
+        public boolean containsLong(long value) {
+            return indexOfLong(value) != -1;
+        }
+
+        /**
+         * Copies the values of this list into a new array.
+         *
+         * @return A new array with the values of this list.
+         */
+        public long[] toLongArray() {
+            long[] values = values();
+            return Arrays.copyOf(values, size(values));
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            return o instanceof Long ? indexOfLong((Long) o) : -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            return o instanceof Long ? lastIndexOfLong((Long) o) : -1;
+        }
+
+        @Override
+        LongList create(long[] values, int size, boolean copyOnWrite) {
+            return new LongList(values, size, copyOnWrite);
+        }
+
+        @Override
+        int length(long[] values) {
+            return values.length;
+        }
+
+        @Override
+        long[] copyOf(long[] values, int length) {
+            return Arrays.copyOf(values, length);
+        }
+
+        @Override
+        Long box(long[] values, int index) {
+            return values[index];
+        }
+
+        @Override
+        void unbox(long[] values, int index, Long value) {
+            values[index] = value;
+        }
+
+        @Override
+        void addParsed(String value) {
+            addLong(Long.parseLong(value));
+        }
+
+        @Override
+        String format(long[] values, int index) {
+            return Long.toString(values[index]);
+        }
+
+        @Override
+        void appendTo(StringBuilder sb, long[] values, int index) {
+            sb.append(values[index]);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package de.kaleidox.util.serializer;
+
+import org.jetbrains.annotations.Nullable;
+
+import de.kaleidox.util.functional.DoubleFunction;
+
+import java.io.File;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * This class represents a PropertiesMapper that stores the values of every key in a {@link PrimitiveList},
+ * which is backed by a growable primitive array; values are parsed from and formatted to the file without being boxed.
+ * In concurrent mode, the lists are copy-on-write, like a {@link CopyOnWriteArrayList}.
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The boxed type of the values.
+ * @param <A> The type of the primitive array.
+ */
+abstract class PrimitivePropertiesMapper<K, V, A> extends PropertiesMapper<K, V> {
+    PrimitivePropertiesMapper(File file, DoubleFunction<String, K> keyFunction, DoubleFunction<String, V> valueFunction) {
+        super(file, keyFunction, valueFunction);
+    }
+
+    PrimitivePropertiesMapper(
+            IOPort<ConcurrentHashMap<String, String>, Map<String, String>> ioPort,
+            @Nullable Character splitWith,
+            DoubleFunction<String, K> keyFunction,
+            DoubleFunction<String, V> valueFunction) {
+        super(ioPort, splitWith, keyFunction, valueFunction);
+    }
+
+    /**
+     * Creates a new, empty list that is not copy-on-write.
+     *
+     * @param capacity The initial capacity.
+     * @return A new list.
+     */
+    abstract PrimitiveList<V, A> emptyList(int capacity);
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected List<V> newList(Collection<V> values) {
+        if (values instanceof PrimitiveList) return ((PrimitiveList<V, A>) values).copy(isConcurrent());
+
+        PrimitiveList<V, A> list = emptyList(values.size());
+        list.addAll(values);
+        return isConcurrent() ? list.copy(true) : list;
+    }
+
+    @Override
+    protected boolean isCopyOnWrite(List<V> values) {
+        return values instanceof PrimitiveList && ((PrimitiveList<?, ?>) values).isCopyOnWrite();
+    }
+
+    @Override
+    protected List<V> decodeValues(List<String> encoded) {
+        PrimitiveList<V, A> values = emptyList(encoded.size());
+        for (String item : encoded) values.addParsed(item);
+
+        return isConcurrent() ? values.copy(true) : values;
+    }
+
+    @Override
+    protected List<V> decodeValues(String joined) {
+        PrimitiveList<V, A> values = emptyList(10);
+
+        // like String#split, trailing empty items are dropped
+        char splitter = splitWith;
+        int length = joined.length();
+        while (length > 0 && joined.charAt(length - 1) == splitter) length--;
+
+        int start = 0, end;
+        while (start < length) {
+            end = joined.indexOf(splitter, start);
+            if (end == -1 || end > length) end = length;
+            values.addParsed(joined.substring(start, end));
+            start = end + 1;
+        }
+
+        return isConcurrent() ? values.copy(true) : values;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected List<String> encodeList(List<V> values) {
+        if (!(values instanceof PrimitiveList)) return super.encodeList(values);
+
+        PrimitiveList<V, A> list = (PrimitiveList<V, A>) values;
+        A array = list.values();
+        int size = list.size(array);
+        List<String> encoded = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) encoded.add(list.format(array, i));
+        return encoded;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected String encodeValues(List<V> values) {
+        if (!(values instanceof PrimitiveList)) return super.encodeValues(values);
+
+        PrimitiveList<V, A> list = (PrimitiveList<V, A>) values;
+        A array = list.values();
+        int size = list.size(array);
+        StringBuilder sb = new StringBuilder(size * 8);
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(splitWith.charValue());
+            list.appendTo(sb, array, i);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * This class represents a list of primitive values, backed by a growable array.
+     * The methods of {@link List} box and unbox the values; the typed methods of the subclasses do not.
+     * Like {@link ArrayList}, a list that is not copy-on-write is not synchronized.
+     * A copy-on-write list copies its array on every mutation like a {@link CopyOnWriteArrayList}, so readers and
+     * iterators always see a consistent array without locking; writers must still be serialized.
+     * Neither permits {@code null} values.
+     *
+     * @param <V> The boxed type of the values.
+     * @param <A> The type of the primitive array.
+     */
+    abstract static class PrimitiveList<V, A> extends AbstractList<V> implements RandomAccess {
+        private final boolean copyOnWrite;
+        private volatile A values;
+        private int size;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param values      The array to use; is not copied. Must have exactly {@code size} values if copy-on-write.
+         * @param size        The amount of values in the array.
+         * @param copyOnWrite Whether the list is copy-on-write.
+         */
+        PrimitiveList(A values, int size, boolean copyOnWrite) {
+            this.values = values;
+            this.size = size;
+            this.copyOnWrite = copyOnWrite;
+        }
+
+        /**
+         * Creates a new instance of the same type.
+         *
+         * @param values      The array to use; is not copied.
+         * @param size        The amount of values in the array.
+         * @param copyOnWrite Whether the list is copy-on-write.
+         * @return A new list.
+         */
+        abstract PrimitiveList<V, A> create(A values, int size, boolean copyOnWrite);
+
+        abstract int length(A values);
+
+        abstract A copyOf(A values, int length);
+
+        abstract V box(A values, int index);
+
+        abstract void unbox(A values, int index, V value);
+
+        abstract void addParsed(String value);
+
+        abstract String format(A values, int index);
+
+        abstract void appendTo(StringBuilder sb, A values, int index);
+
+        /**
+         * Checks whether this list is copy-on-write.
+         *
+         * @return whether this list copies its array on every mutation.
+         */
+        boolean isCopyOnWrite() {
+            return copyOnWrite;
+        }
+
+        /**
+         * Copies this list.
+         *
+         * @param copyOnWrite Whether the copy is copy-on-write.
+         * @return A new list with the values of this list.
+         */
+        PrimitiveList<V, A> copy(boolean copyOnWrite) {
+            A values = this.values;
+            int size = size(values);
+            return create(copyOf(values, size), size, copyOnWrite);
+        }
+
+        /**
+         * Gets the current array. Its values must not be modified.
+         *
+         * @return the current array.
+         */
+        final A values() {
+            return values;
+        }
+
+        /**
+         * Gets the amount of values in an array of this list.
+         *
+         * @param values An array returned by {@link #values()}.
+         * @return the amount of values in the array.
+         */
+        final int size(A values) {
+            return copyOnWrite ? length(values) : size;
+        }
+
+        /**
+         * Gets the array to read a position from.
+         *
+         * @param index The index to read.
+         * @return the current array.
+         * @throws IndexOutOfBoundsException If the index out of the Lists range.
+         */
+        final A readable(int index) {
+            A values = this.values;
+            checkIndex(index, size(values));
+            return values;
+        }
+
+        /**
+         * Gets the array to write a position to; must be passed to {@link #written(Object)} afterwards.
+         *
+         * @param index The index to write.
+         * @return the current array, or a copy of it if copy-on-write.
+         * @throws IndexOutOfBoundsException If the index out of the Lists range.
+         */
+        final A writable(int index) {
+            A values = readable(index);
+            return copyOnWrite ? copyOf(values, length(values)) : values;
+        }
+
+        final void written(A values) {
+            if (copyOnWrite) this.values = values;
+        }
+
+        /**
+         * Opens a gap in the array to insert a value at; must be passed to {@link #inserted(Object)} afterwards.
+         *
+         * @param index The index to insert at.
+         * @return the array with a gap at the index.
+         * @throws IndexOutOfBoundsException If the index out of the Lists range.
+         */
+        final A insertable(int index) {
+            A values = this.values;
+            int size = size(values);
+            if (index < 0 || index > size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+            modCount++;
+            if (copyOnWrite) values = copyOf(values, size + 1);
+            else if (size == length(values)) values = copyOf(values, Math.max(10, size + (size >> 1)));
+            System.arraycopy(values, index, values, index + 1, size - index);
+            return values;
+        }
+
+        final void inserted(A values) {
+            if (values != this.values) this.values = values;
+            if (!copyOnWrite) size++;
+        }
+
+        @Override
+        public V get(int index) {
+            return box(readable(index), index);
+        }
+
+        @Override
+        public V set(int index, V value) {
+            A values = writable(index);
+            V previous = box(values, index);
+            unbox(values, index, value);
+            written(values);
+            return previous;
+        }
+
+        @Override
+        public boolean add(V value) {
+            add(size(), value);
+            return true;
+        }
+
+        @Override
+        public void add(int index, V value) {
+            A values = insertable(index);
+            unbox(values, index, value);
+            inserted(values);
+        }
+
+        @Override
+        public V remove(int index) {
+            A values = readable(index);
+            int size = size(values);
+            V previous = box(values, index);
+
+            modCount++;
+            if (copyOnWrite) {
+                A removed = copyOf(values, size - 1);
+                System.arraycopy(values, index + 1, removed, index, size - index - 1);
+                this.values = removed;
+            } else {
+                System.arraycopy(values, index + 1, values, index, size - index - 1);
+                this.size--;
+            }
+            return previous;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            int index = indexOf(o);
+            if (index == -1) return false;
+            remove(index);
+            return true;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return indexOf(o) != -1;
+        }
+
+        @Override
+        public void clear() {
+            modCount++;
+            if (copyOnWrite) values = copyOf(values, 0);
+            else size = 0;
+        }
+
+        @Override
+        public int size() {
+            return size(values);
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            return listIterator(0);
+        }
+
+        @Override
+        public ListIterator<V> listIterator(int index) {
+            if (!copyOnWrite) return super.listIterator(index);
+
+            // iterates a snapshot like CopyOnWriteArrayList, so concurrent writers do not fail the iteration
+            A values = this.values;
+            return Collections.unmodifiableList(create(values, length(values), false)).listIterator(index);
+        }
+
+        private static void checkIndex(int index, int size) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
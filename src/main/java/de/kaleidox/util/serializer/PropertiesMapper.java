@@ -5,33 +5,91 @@ import org.jetbrains.annotations.Nullable;
 import de.kaleidox.util.functional.DoubleFunction;
 import de.kaleidox.util.toolchains.CustomCollectors;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This class represents a PropertiesMapper, which can be used to store things in a {@code .properties} File.
  */
 @SuppressWarnings({"unused", "WeakerAccess", "UnusedReturnValue", "NullableProblems"})
-public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implements Iterable<V> {
+public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implements Iterable<V>, Closeable {
     private final static Character[] splitterList = new Character[]{'▪'};
+    private final static long WATCH_SETTLE_MILLIS = 50;
+    private final static long ESTIMATED_KEY_BYTES = 96;
+    private final static long ESTIMATED_VALUE_BYTES = 24;
     protected final ArrayList<Character> deadCharacters = new ArrayList<>();
     protected final IOPort<ConcurrentHashMap<String, String>, Map<String, String>> ioPort;
     protected final Character splitWith;
     protected final DoubleFunction<String, K> keyFunction;
     protected final DoubleFunction<String, V> valueFunction;
+    private final @Nullable JournalIOPort journal;
+    private final @Nullable BinaryIOPort binary;
+    private final @Nullable SegmentedIOPort segmented;
+    private final @Nullable AtomicIntegerArray dirtySegments;
+    // the keys of every segment; removed keys are dropped when their segment is written
+    private final @Nullable List<Set<K>> segmentKeys;
+    private final ConcurrentHashMap<K, Object> encodings;
+    private final Set<K> dirtyKeys;
+    private final AtomicBoolean allDirty;
+    private volatile @Nullable ConcurrentHashMap<V, ConcurrentHashMap<K, Integer>> valueIndex;
+    private final Object[] locks;
+    private final ConcurrentHashMap<K, Version<V>> history;
+    private final ConcurrentSkipListSet<Long> openSnapshots;
+    private volatile long epoch = 0;
+    private final AtomicInteger dirtyCount = new AtomicInteger(0);
+    private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+    private volatile boolean writeBehind = false;
+    private volatile boolean concurrent = false;
+    private final boolean lazy;
+    private int dirtyThreshold;
+    private ScheduledExecutorService flusher;
+    private Thread shutdownFlush;
+    private @Nullable Map<String, ?> baseline;
+    private volatile @Nullable Bound<K> bound;
+    private volatile @Nullable Thread batchOwner;
+    private @Nullable List<Consumer<JournalIOPort>> batchRecords;
+    private WatchService watchService;
 
     /**
      * Creates a new instance.
@@ -65,15 +123,83 @@ public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implem
             @Nullable Character splitWith,
             DoubleFunction<String, K> keyFunction,
             DoubleFunction<String, V> valueFunction) {
+        this(ioPort, splitWith, keyFunction, valueFunction, false);
+    }
+
+    /**
+     * Creates a new instance.
+     * <p>
+     * In lazy mode, the values of every key are kept in the form they were loaded from the file,
+     * and are only converted with the {@code valueFunction} when the list of the key is first accessed.
+     * Keys whose lists were never accessed are written back in the form they were loaded in.
+     * Enabling the reverse value index, or looking through all values, converts the values of all keys.
+     *
+     * @param ioPort        The IOPort to read and write from.
+     * @param splitWith     A Nullable custom Character to split the entries in the file with.
+     * @param keyFunction   A DoubleFunction to convert the keys.
+     * @param valueFunction A DoubleFunction to convert the values.
+     * @param lazy          Whether the values should be converted on first access instead of on load.
+     */
+    public PropertiesMapper(
+            IOPort<ConcurrentHashMap<String, String>, Map<String, String>> ioPort,
+            @Nullable Character splitWith,
+            DoubleFunction<String, K> keyFunction,
+            DoubleFunction<String, V> valueFunction,
+            boolean lazy) {
         super();
+        this.locks = new Object[lockStripes()];
+        for (int i = 0; i < locks.length; i++) locks[i] = new Object();
+        this.history = new ConcurrentHashMap<>();
+        this.openSnapshots = new ConcurrentSkipListSet<>();
         this.ioPort = ioPort;
         this.splitWith = (splitWith == null ? selectSplitter() : splitWith);
         this.keyFunction = keyFunction;
         this.valueFunction = valueFunction;
+        this.lazy = lazy;
+        this.journal = (ioPort instanceof JournalIOPort ? (JournalIOPort) ioPort : null);
+        this.binary = (ioPort instanceof BinaryIOPort ? (BinaryIOPort) ioPort : null);
+        this.segmented = (ioPort instanceof SegmentedIOPort ? (SegmentedIOPort) ioPort : null);
+        this.dirtySegments = (segmented != null ? new AtomicIntegerArray(segmented.getSegmentCount()) : null);
+        this.segmentKeys = (segmented != null ? new ArrayList<>(segmented.getSegmentCount()) : null);
+        if (segmentKeys != null)
+            for (int segment = 0; segment < segmented.getSegmentCount(); segment++)
+                segmentKeys.add(ConcurrentHashMap.newKeySet());
+        this.encodings = new ConcurrentHashMap<>();
+        this.dirtyKeys = ConcurrentHashMap.newKeySet();
+        this.allDirty = new AtomicBoolean(false);
+
+        if (journal != null && !journal.getSplitWith().equals(this.splitWith))
+            throw new IllegalArgumentException("The JournalIOPort must use the same splitter character as the mapper!");
 
         reloadFromFile();
     }
 
+    /**
+     * Creates a new instance that shares the IO Port, the conversion functions and the locks of another instance.
+     * Nothing is read from the file; this is meant for subclasses that are views of the other instance.
+     *
+     * @param source The instance to share the IO Port, the conversion functions and the locks of.
+     */
+    protected PropertiesMapper(PropertiesMapper<K, V> source) {
+        super();
+        this.locks = source.locks;
+        this.history = source.history;
+        this.openSnapshots = source.openSnapshots;
+        this.ioPort = source.ioPort;
+        this.splitWith = source.splitWith;
+        this.keyFunction = source.keyFunction;
+        this.valueFunction = source.valueFunction;
+        this.lazy = source.lazy;
+        this.journal = source.journal;
+        this.binary = source.binary;
+        this.segmented = source.segmented;
+        this.dirtySegments = source.dirtySegments;
+        this.segmentKeys = source.segmentKeys;
+        this.encodings = source.encodings;
+        this.dirtyKeys = source.dirtyKeys;
+        this.allDirty = source.allDirty;
+    }
+
     /**
      * Gets the splitter character.
      *
@@ -93,24 +219,636 @@ public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implem
     }
 
     /**
-     * Returns a SelectedPropertiesMapper with this instance's pieces.
+     * Enables write-behind mode.
+     * In this mode, mutations only mark this instance as dirty instead of writing the whole map to the file.
+     * The contents are written if the amount of unwritten mutations reaches {@code dirtyThreshold},
+     * if the given interval has passed, if {@link #flush()} is called, and a last time on {@link #close()}.
+     *
+     * @param interval       The interval to flush unwritten mutations in. If {@code <= 0}, no periodic flushing happens.
+     * @param unit           The unit of the interval.
+     * @param dirtyThreshold The amount of unwritten mutations that triggers a flush. If {@code <= 0}, no threshold is used.
+     * @return This instance.
+     * @throws IllegalStateException If write-behind mode is already enabled.
+     */
+    public synchronized PropertiesMapper<K, V> writeBehind(long interval, TimeUnit unit, int dirtyThreshold) {
+        if (writeBehind) throw new IllegalStateException("Write-behind mode is already enabled!");
+
+        this.dirtyThreshold = dirtyThreshold;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PropertiesMapper Flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (interval > 0) flusher.scheduleWithFixedDelay(this::flush, interval, interval, unit);
+
+        this.shutdownFlush = new Thread(this::flush, "PropertiesMapper Shutdown Flusher");
+        Runtime.getRuntime().addShutdownHook(shutdownFlush);
+
+        writeBehind = true;
+        return this;
+    }
+
+    /**
+     * Checks whether this instance is in write-behind mode.
+     *
+     * @return whether write-behind mode is enabled.
+     * @see #writeBehind(long, TimeUnit, int)
+     */
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * Checks whether there are mutations that have not been written to the file yet.
+     *
+     * @return whether this instance has unwritten mutations.
+     */
+    public boolean isDirty() {
+        return dirtyCount.get() > 0;
+    }
+
+    /**
+     * Writes all unwritten mutations to the file. Does nothing if this instance is not dirty.
+     *
+     * @see #writeChanges()
+     */
+    public void flush() {
+        flushQueued.set(false);
+        if (dirtyCount.getAndSet(0) > 0) writeChanges();
+    }
+
+    /**
+     * Stops watching the file, and performs a final flush and stops write-behind mode, if it is enabled.
+     * Further mutations are written to the file directly again.
+     * If bounded mode is enabled, it is disabled, so the evicted keys are reloaded and the spill file is closed.
+     * If this instance uses an {@link AsyncIOPort}, this waits until all writes are performed.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            stopWatching();
+            if (writeBehind) {
+                writeBehind = false;
+                flusher.shutdown();
+                try {
+                    Runtime.getRuntime().removeShutdownHook(shutdownFlush);
+                } catch (IllegalStateException ignored) {
+                    // the JVM is already shutting down; the hook performs the flush
+                }
+            }
+        }
+        flush();
+        unbounded();
+        if (ioPort instanceof AsyncIOPort) ((AsyncIOPort<?, ?>) ioPort).close();
+    }
+
+    /**
+     * Starts watching the file for changes by other processes.
+     * When the file changes, only the keys whose entries in the file differ from the last read or write are
+     * reloaded, and keys that disappeared from the file are removed.
+     * Writes of this instance do not cause a reload, as they leave no difference to apply.
+     * <p>
+     * The entries of the file are kept in the form they were read or written in, to compare them.
+     *
+     * @param file The file that the IO Port of this instance reads from and writes to.
+     * @return This instance.
+     * @throws IllegalStateException If the file is already watched,
+     *                               or if this instance uses a {@link JournalIOPort} or a {@link SegmentedIOPort}.
+     * @throws UncheckedIOException  If the file could not be watched.
+     * @see #reloadChanges()
+     */
+    public synchronized PropertiesMapper<K, V> watch(File file) {
+        if (watchService != null) throw new IllegalStateException("The file is already being watched!");
+        if (journal != null) throw new IllegalStateException("A journaled PropertiesMapper cannot watch its file!");
+        if (segmented != null) throw new IllegalStateException("A segmented PropertiesMapper cannot watch its files!");
+
+        Path path = file.getAbsoluteFile().toPath();
+        try {
+            watchService = path.getFileSystem().newWatchService();
+            path.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        baseline = binary != null ? binary.readLists() : ioPort.read();
+
+        WatchService service = watchService;
+        Thread watcher = new Thread(() -> {
+            try {
+                while (true) {
+                    // writers usually truncate the file first; wait until its events settle to not read it half-written
+                    boolean changed = false;
+                    for (WatchKey key = service.take(); key != null;
+                         key = service.poll(WATCH_SETTLE_MILLIS, TimeUnit.MILLISECONDS)) {
+                        for (WatchEvent<?> event : key.pollEvents())
+                            changed |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                                    || path.getFileName().equals(event.context());
+                        key.reset();
+                    }
+
+                    if (changed) try {
+                        reloadChanges();
+                    } catch (RuntimeException e) {
+                        // most likely the file is being written; its next modification triggers another reload
+                        e.printStackTrace();
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            }
+        }, "PropertiesMapper Watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+
+        return this;
+    }
+
+    /**
+     * Stops watching the file, if it is watched.
+     *
+     * @see #watch(File)
+     */
+    public synchronized void stopWatching() {
+        if (watchService == null) return;
+
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        watchService = null;
+        baseline = null;
+    }
+
+    /**
+     * Checks whether the file is watched for changes.
+     *
+     * @return whether the file is watched.
+     * @see #watch(File)
+     */
+    public synchronized boolean isWatching() {
+        return watchService != null;
+    }
+
+    /**
+     * Reads the file and applies only the entries that changed since the file was last read or written:
+     * changed keys are reloaded, and keys that disappeared from the file are removed.
+     * Mutations of unchanged keys that were not written yet are kept.
+     * This is called by the watcher whenever the file changes.
+     *
+     * @throws IllegalStateException If the file is not watched.
+     * @see #watch(File)
+     */
+    public void reloadChanges() {
+        synchronized (this) {
+            Map<String, ?> previous = baseline;
+            if (previous == null) throw new IllegalStateException("The file is not being watched!");
+
+            Map<String, ?> current;
+            if (binary != null) {
+                Map<String, List<String>> lists = binary.readLists();
+                lists.forEach((key, values) -> {
+                    if (!values.equals(previous.get(key))) load(key, decodeLoaded(values));
+                });
+                current = lists;
+            } else {
+                ConcurrentHashMap<String, String> entries = ioPort.read();
+                entries.forEach((key, value) -> {
+                    if (!value.equals(previous.get(key))) load(key, decodeLoaded(value));
+                });
+                current = entries;
+            }
+            for (String key : previous.keySet())
+                if (!current.containsKey(key)) unload(key);
+
+            baseline = current;
+            evictOverflow();
+        }
+    }
+
+    /**
+     * Enables concurrent mode.
+     * In this mode, the values of every key are stored in a {@link CopyOnWriteArrayList},
+     * or in a copy-on-write primitive list for {@link LongPropertiesMapper} and {@link IntPropertiesMapper}.
+     * Reading values never blocks and always sees a consistent list, while writers of the same key
+     * are serialized by the key's lock; writers of different keys mostly do not contend.
+     * Every mutation copies the list of the mutated key, so this mode fits read-heavy use with short lists.
+     *
+     * @return This instance.
+     */
+    public synchronized PropertiesMapper<K, V> concurrent() {
+        if (concurrent) return this;
+
+        concurrent = true;
+        for (K key : keySet()) {
+            synchronized (lockFor(key)) {
+                // lazy lists that were not decoded yet are decoded into a concurrent list later
+                computeIfPresent(key, (k, list) -> list instanceof LazyList && !((LazyList) list).isDecoded()
+                        ? list
+                        : newList(list));
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Checks whether this instance is in concurrent mode.
+     *
+     * @return whether concurrent mode is enabled.
+     * @see #concurrent()
+     */
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    /**
+     * Checks whether this instance is in lazy mode.
+     *
+     * @return whether the values are converted on first access.
+     * @see #PropertiesMapper(IOPort, Character, DoubleFunction, DoubleFunction, boolean)
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Enables the reverse value index.
+     * The index maps every value to the keys that contain it, and is updated with every mutation of this instance.
+     * With the index, {@link #hasValue(Object)}, {@link #getKeysWithValue(Object)} and {@link #removeValues(Object)}
+     * only look at the keys that actually contain the value, instead of at every list.
+     * <p>
+     * This should be called before this instance is shared with other threads.
+     * Lists obtained by {@link #get(Object)} must not be modified directly while the index is enabled.
+     *
+     * @return This instance.
+     */
+    public synchronized PropertiesMapper<K, V> indexValues() {
+        if (valueIndex != null) return this;
+
+        valueIndex = new ConcurrentHashMap<>();
+        for (Entry<K, List<V>> entry : entrySet()) {
+            synchronized (lockFor(entry.getKey())) {
+                entry.getValue().forEach(value -> indexAdd(entry.getKey(), value));
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Checks whether the reverse value index is enabled.
+     *
+     * @return whether the reverse value index is enabled.
+     * @see #indexValues()
+     */
+    public boolean isValueIndexed() {
+        return valueIndex != null;
+    }
+
+    /**
+     * Gets all keys that contain the given value.
+     *
+     * @param value The value to look for.
+     * @return A new set with all keys whose list contains the value.
+     */
+    public Set<K> getKeysWithValue(V value) {
+        ConcurrentHashMap<V, ConcurrentHashMap<K, Integer>> index = valueIndex;
+        if (index != null && value != null) {
+            ConcurrentHashMap<K, Integer> keys = index.get(value);
+            return keys == null ? new HashSet<>() : new HashSet<>(keys.keySet());
+        }
+
+        Set<K> keys = new HashSet<>();
+        forEach((key, list) -> {
+            if (list.contains(value)) keys.add(key);
+        });
+        return keys;
+    }
+
+    /**
+     * Enables bounded mode.
+     * In this mode, at most {@code maxKeys} keys, or keys with an estimated size of at most {@code maxBytes},
+     * are kept in memory. The least recently used keys are evicted to a spill file, and are reloaded transparently
+     * when they are accessed again through {@link #get(Object)} or any method that uses it.
+     * Evicted keys are still written to the file of this instance.
+     * <p>
+     * Map views, {@link #size()}, iterating the values and iterating snapshots only cover the keys in memory.
+     * Keys are not evicted while snapshots are open. In lazy mode, keys that were not accessed since they were loaded
+     * are evicted without being encoded again.
+     * If bounded mode is already enabled, it is replaced; the keys of the previous spill file are reloaded first.
+     *
+     * @param maxKeys   The maximum amount of keys in memory. If {@code <= 0}, the amount of keys is not bounded.
+     * @param maxBytes  The maximum estimated size of the keys in memory, in bytes.
+     *                  If {@code <= 0}, the size of the keys is not bounded.
+     * @param spillFile The file to store evicted keys in. Is truncated, and deleted when the JVM exits.
+     * @return This instance.
+     * @throws IllegalArgumentException If neither bound is given.
+     * @throws IllegalStateException    If this instance uses a {@link BinaryIOPort}.
+     * @throws UncheckedIOException     If the spill file could not be opened.
+     * @see #estimateBytes(List)
+     * @see #unbounded()
+     */
+    public synchronized PropertiesMapper<K, V> bounded(int maxKeys, long maxBytes, File spillFile) {
+        if (binary != null) throw new IllegalStateException("A binary PropertiesMapper cannot be bounded!");
+        if (maxKeys <= 0 && maxBytes <= 0) throw new IllegalArgumentException("At least one bound is required!");
+        unbounded();
+
+        Bound<K> bound = new Bound<>(maxKeys, maxBytes, new SpillFile<>(spillFile));
+        synchronized (bound.resident) {
+            forEach((key, list) -> bound.admit(key, estimateBytes(list)));
+        }
+        this.bound = bound;
+        evictOverflow();
+        return this;
+    }
+
+    /**
+     * Disables bounded mode, if it is enabled. The evicted keys are reloaded into memory, and the spill file is closed.
+     *
+     * @return This instance.
+     * @throws UncheckedIOException If the evicted keys could not be read, or the spill file could not be closed.
+     * @see #bounded(int, long, File)
+     */
+    public synchronized PropertiesMapper<K, V> unbounded() {
+        Bound<K> bound = this.bound;
+        if (bound == null) return this;
+
+        // no key is evicted meanwhile; a key that is reloaded concurrently is not in the spill file anymore
+        bound.evictLock.writeLock().lock();
+        try {
+            bound.spill.readAll().forEach((key, encoded) -> {
+                synchronized (lockFor(key)) {
+                    if (super.get(key) == null) {
+                        put(key, decodeLoaded(encoded));
+                        encodings.put(key, encoded);
+                    }
+                }
+            });
+            this.bound = null;
+            bound.spill.close();
+        } finally {
+            bound.evictLock.writeLock().unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Checks whether this instance is in bounded mode.
+     *
+     * @return whether bounded mode is enabled.
+     * @see #bounded(int, long, File)
+     */
+    public boolean isBounded() {
+        return bound != null;
+    }
+
+    /**
+     * Gets the amount of lookups of keys that were in memory, since bounded mode was enabled.
+     *
+     * @return the amount of cache hits; 0 if bounded mode is not enabled.
+     */
+    public long getHitCount() {
+        Bound<K> bound = this.bound;
+        return bound == null ? 0 : bound.hits.sum();
+    }
+
+    /**
+     * Gets the amount of lookups of keys that had to be reloaded from the spill file, since bounded mode was enabled.
+     *
+     * @return the amount of cache misses; 0 if bounded mode is not enabled.
+     */
+    public long getMissCount() {
+        Bound<K> bound = this.bound;
+        return bound == null ? 0 : bound.misses.sum();
+    }
+
+    /**
+     * Gets the amount of keys that were evicted to the spill file, since bounded mode was enabled.
+     *
+     * @return the amount of evictions; 0 if bounded mode is not enabled.
+     */
+    public long getEvictionCount() {
+        Bound<K> bound = this.bound;
+        return bound == null ? 0 : bound.evictions.sum();
+    }
+
+    /**
+     * Takes an immutable, point-in-time snapshot of this instance.
+     * Taking a snapshot does not copy anything; it only waits for the mutations that are in progress.
+     * While snapshots are open, the first mutation of a key after a snapshot was taken replaces the key's list
+     * with a copy, and keeps the previous list for the snapshots; further mutations change the copy in place.
+     * So readers of a snapshot never block writers, and writers only copy the lists that they change.
+     * <p>
+     * Snapshots should be closed once they are not needed anymore, so the kept lists can be dropped.
+     * Lists obtained by {@link #get(Object)} must not be modified directly while snapshots are open.
+     *
+     * @return A new snapshot.
+     */
+    public Snapshot snapshot() {
+        long[] taken = new long[1];
+        // holding every lock stripe waits for all running mutations, and keeps new ones from starting
+        withAllLocks(0, () -> {
+            taken[0] = epoch;
+            openSnapshots.add(taken[0]);
+            epoch = taken[0] + 1;
+        });
+        return new Snapshot(taken[0]);
+    }
+
+    /**
+     * Applies several mutations as one batch, and writes them to the file once.
+     * While the mutations are applied, all other mutations and writes wait, and snapshots cannot be taken,
+     * so no snapshot and no write observes the batch half-done.
+     * The mutations are written like a single mutation; in write-behind mode, they count as one unwritten mutation.
+     * With a {@link JournalIOPort}, their records are appended after all mutations were applied.
+     * <p>
+     * If the mutations throw, the mutations that were applied until then are kept and written.
+     * Batches that are started while applying a batch become part of it.
+     *
+     * @param mutations A consumer that applies the mutations to this instance.
+     * @return This instance.
+     * @see #transaction(Consumer)
+     */
+    public PropertiesMapper<K, V> batch(Consumer<PropertiesMapper<K, V>> mutations) {
+        return applyBatch(mutations, false);
+    }
+
+    /**
+     * Applies several mutations as one batch, like {@link #batch(Consumer)}, but all or nothing.
+     * The mutations are written to the file directly, even in write-behind mode.
+     * If the mutations throw, or if writing them fails, all keys that were mutated are rolled back to their values
+     * before the transaction, and the exception is rethrown.
+     * <p>
+     * Only failures that are thrown by the IO Port can be detected; the ports of {@link IOPort#mapPort(File)} print
+     * failures instead. Lists that were modified directly are not rolled back, and with a {@link JournalIOPort},
+     * records that were already appended when appending fails remain in the journal.
+     *
+     * @param mutations A consumer that applies the mutations to this instance.
+     * @return This instance.
+     * @throws RuntimeException If the mutations threw, or if they could not be written.
+     */
+    public PropertiesMapper<K, V> transaction(Consumer<PropertiesMapper<K, V>> mutations) {
+        return applyBatch(mutations, true);
+    }
+
+    /**
+     * Applies a batch while holding this instance's monitor and all lock stripes, in the order that writes take them.
+     * In bounded mode, the eviction lock is taken before the lock stripes, like evictions take them,
+     * as writing the batch needs it while the stripes are held.
+     *
+     * @param mutations A consumer that applies the mutations to this instance.
+     * @param rollback  Whether to roll back the mutations if they or the write fail.
+     * @return This instance.
+     */
+    private PropertiesMapper<K, V> applyBatch(Consumer<PropertiesMapper<K, V>> mutations, boolean rollback) {
+        if (batchOwner == Thread.currentThread()) {
+            mutations.accept(this);
+            return this;
+        }
+
+        synchronized (this) {
+            Bound<K> bound = this.bound;
+            if (bound != null) bound.evictLock.writeLock().lock();
+            try {
+                withAllLocks(0, () -> applyLocked(mutations, rollback));
+            } finally {
+                if (bound != null) bound.evictLock.writeLock().unlock();
+            }
+        }
+        evictOverflow();
+        return this;
+    }
+
+    /**
+     * Applies a batch. Must be called while holding this instance's monitor and all lock stripes.
+     *
+     * @param mutations A consumer that applies the mutations to this instance.
+     * @param rollback  Whether to roll back the mutations if they or the write fail.
+     */
+    private void applyLocked(Consumer<PropertiesMapper<K, V>> mutations, boolean rollback) {
+        // the snapshot keeps the lists of all keys that the batch mutates, to roll them back
+        Snapshot before = rollback ? snapshot() : null;
+        List<Consumer<JournalIOPort>> records = new ArrayList<>();
+        try {
+            batchRecords = records;
+            batchOwner = Thread.currentThread();
+            try {
+                mutations.accept(this);
+            } catch (RuntimeException | Error e) {
+                endBatch();
+                if (before != null) rollBack(before);
+                else try {
+                    commit(records, null);
+                } catch (RuntimeException commitFailure) {
+                    e.addSuppressed(commitFailure);
+                }
+                throw e;
+            }
+            endBatch();
+            commit(records, before);
+        } finally {
+            if (before != null) before.close();
+        }
+    }
+
+    private void endBatch() {
+        batchOwner = null;
+        batchRecords = null;
+    }
+
+    /**
+     * Persists the mutations of a batch once.
+     *
+     * @param records The journal records of the mutations.
+     * @param before  The snapshot to roll back to if persisting fails; null to persist like a single mutation.
+     */
+    private void commit(List<Consumer<JournalIOPort>> records, @Nullable Snapshot before) {
+        try {
+            if (journal != null) records.forEach(recorder -> recorder.accept(journal));
+            else if (before == null) persist();
+            else {
+                writeChanges();
+                if (ioPort instanceof AsyncIOPort) ((AsyncIOPort<?, ?>) ioPort).flush().join();
+            }
+        } catch (RuntimeException e) {
+            if (before != null) rollBack(before);
+            throw e;
+        }
+    }
+
+    /**
+     * Restores the lists of all keys that were mutated since a snapshot was taken.
+     * Must be called while holding all lock stripes.
+     *
+     * @param before The snapshot to restore.
+     */
+    private void rollBack(Snapshot before) {
+        for (K key : history.keySet()) {
+            List<V> live = super.get(key);
+            List<V> previous = before.resolve(key, live);
+            if (previous == live) continue;
+
+            if (previous == null) remove(key);
+            else put(key, previous);
+            if (isValueIndexed()) {
+                if (live != null) live.forEach(value -> indexRemove(key, value));
+                if (previous != null) previous.forEach(value -> indexAdd(key, value));
+            }
+            markDirty(key);
+            account(key);
+        }
+    }
+
+    /**
+     * Returns a SelectedPropertiesMapper that is a view of this instance.
+     * The view shares the lists and the IO Port of this instance; creating it does not read the file.
      *
      * @param key The key to select.
      * @return the new SelectedPropertiesMapper.
      */
     public SelectedPropertiesMapper<K, V> select(K key) {
-        return new SelectedPropertiesMapper<>(
-                this.ioPort,
-                key,
-                this.splitWith,
-                this.keyFunction,
-                this.valueFunction
-        );
+        return new SelectedPropertiesMapper<>(this, key);
     }
 
+    /**
+     * Gets the list of a key. In bounded mode, a key that was evicted is reloaded from the spill file.
+     *
+     * @param key The key to look at.
+     * @return The list of the key, or null if the key is not contained.
+     */
     @Override
     public List<V> get(Object key) {
-        return super.get(key);
+        return lookup(key, true);
+    }
+
+    /**
+     * Gets the list of a key like {@link #get(Object)} does.
+     *
+     * @param key   The key to look at.
+     * @param count Whether to count the lookup as a cache hit or miss in bounded mode; lookups of mutations are not.
+     * @return The list of the key, or null if the key is not contained.
+     */
+    private @Nullable List<V> lookup(Object key, boolean count) {
+        List<V> list = super.get(key);
+        Bound<K> bound = this.bound;
+        if (bound == null) return list;
+
+        if (list == null) return restore(bound, key, count);
+        bound.touch(key, count);
+        return list;
+    }
+
+    /**
+     * Checks whether a key is contained, including keys that were evicted in bounded mode.
+     *
+     * @param key The key to check for.
+     * @return whether the key is contained.
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        Bound<K> bound = this.bound;
+        // not super.containsKey(key), which would reload the key through get(key)
+        return super.get(key) != null || bound != null && bound.spill.contains(key);
     }
 
     /**
@@ -123,8 +861,8 @@ public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implem
      * @see ArrayList#get(int)
      */
     public V get(K key, int index) {
-        provideList(key);
-        return get(key).get(index);
+        List<V> list = get(key);
+        return (list != null ? list : provideList(key)).get(index);
     }
 
     /**
@@ -136,9 +874,18 @@ public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implem
      * @return the item at the given index, otherwise the absence value.
      */
     public V getOrDefault(K key, int index, V valueIfAbsent) {
-        provideList(key);
-        if (get(key).size() > index) {
-            return get(key).get(index);
+        List<V> list = get(key);
+        if (list == null) list = provideList(key);
+        if (!concurrent) {
+            if (list.size() > index) {
+                return list.get(index);
+            }
+        } else {
+            // a concurrent writer may shrink the list between the size check and the access
+            try {
+                return list.get(index);
+            } catch (IndexOutOfBoundsException ignored) {
+            }
         }
 
         return valueIfAbsent;
@@ -156,9 +903,13 @@ public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implem
      */
     public boolean add(K key, V value) {
         testForIllegalCharacters(value);
-        provideList(key);
-        boolean add = get(key).add(value);
-        if (add) writeToFile();
+        boolean add;
+        synchronized (lockFor(key)) {
+            add = writableList(key, true).add(value);
+            if (add) indexAdd(key, value);
+            if (add) record(journal -> journal.appendAdd(keyFunction.toInput(key), valueFunction.toInput(value)));
+        }
+        if (add) changed(key);
         return add;
     }
 
@@ -172,14 +923,15 @@ public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implem
      * @see ArrayList#add(Object)
      */
     public boolean addIfValueAbsent(K key, V value) {
-        provideList(key);
-        if (!get(key).contains(value)) {
-            boolean add = get(key).add(value);
-            if (add) writeToFile();
-            return add;
+        boolean add = false;
+        synchronized (lockFor(key)) {
+            if (!provideList(key).contains(value))
+                add = writableList(key, true).add(value);
+            if (add) indexAdd(key, value);
+            if (add) record(journal -> journal.appendAdd(keyFunction.toInput(key), valueFunction.toInput(value)));
         }
-
-        return false;
+        if (add) changed(key);
+        return add;
     }
 
     /**
@@ -193,8 +945,13 @@ public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implem
     public boolean addIfPredicate(K key, V value, Predicate<PropertiesMapper<K, V>> mapPredicate) {
         provideList(key);
         if (mapPredicate.test(this)) {
-            boolean add = get(key).add(value);
-            if (add) writeToFile();
+            boolean add;
+            synchronized (lockFor(key)) {
+                add = writableList(key, true).add(value);
+                if (add) indexAdd(key, value);
+                if (add) record(journal -> journal.appendAdd(keyFunction.toInput(key), valueFunction.toInput(value)));
+            }
+            if (add) changed(key);
             return add;
         }
         return false;
@@ -211,9 +968,12 @@ public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implem
      * @see ArrayList#set(int, Object)
      */
     public V set(K key, int index, V value) {
-        provideList(key);
-        V set = get(key).set(index, value);
-        writeToFile();
+        V set;
+        synchronized (lockFor(key)) {
+            set = indexSet(key, writableList(key, true).set(index, value), value);
+            record(journal -> journal.appendSet(keyFunction.toInput(key), index, valueFunction.toInput(value)));
+        }
+        changed(key);
         return set;
     }
 
@@ -228,13 +988,13 @@ public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implem
      * @see ArrayList#set(int, Object)
      */
     public boolean setIfValueAbsent(K key, int index, V value) {
-        provideList(key);
-        if (!get(key).contains(value)) {
-            get(key).set(index, value);
-            writeToFile();
-            return true;
+        synchronized (lockFor(key)) {
+            if (provideList(key).contains(value)) return false;
+            indexSet(key, writableList(key, true).set(index, value), value);
+            record(journal -> journal.appendSet(keyFunction.toInput(key), index, valueFunction.toInput(value)));
         }
-        return false;
+        changed(key);
+        return true;
     }
 
     /**
@@ -251,8 +1011,11 @@ public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implem
     public boolean setIfPredicate(K key, int index, V value, Predicate<PropertiesMapper<K, V>> mapPredicate) {
         provideList(key);
         if (mapPredicate.test(this)) {
-            get(key).set(index, value);
-            writeToFile();
+            synchronized (lockFor(key)) {
+                indexSet(key, writableList(key, true).set(index, value), value);
+                record(journal -> journal.appendSet(keyFunction.toInput(key), index, valueFunction.toInput(value)));
+            }
+            changed(key);
             return true;
         }
         return false;
@@ -270,13 +1033,14 @@ public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implem
      * @see ArrayList#set(int, Object)
      */
     public boolean setToCoordinates(K key, int index, V value) {
-        provideList(key);
-        if (get(key).contains(value) & get(key).indexOf(value) != index) {
-            get(key).set(index, value);
-            writeToFile();
-            return true;
+        synchronized (lockFor(key)) {
+            List<V> list = provideList(key);
+            if (!list.contains(value) || list.indexOf(value) == index) return false;
+            indexSet(key, writableList(key, true).set(index, value), value);
+            record(journal -> journal.appendSet(keyFunction.toInput(key), index, valueFunction.toInput(value)));
         }
-        return false;
+        changed(key);
+        return true;
     }
 
     /**
@@ -287,6 +1051,9 @@ public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implem
      * @see ArrayList#contains(Object)
      */
     public boolean hasValue(V value) {
+        ConcurrentHashMap<V, ConcurrentHashMap<K, Integer>> index = valueIndex;
+        if (index != null && value != null) return index.containsKey(value);
+
         return entrySet().stream()
                 .anyMatch(e -> e.getValue()
                         .stream()
@@ -301,8 +1068,7 @@ public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implem
      * @return whether the key is contained.
      */
     public boolean hasKey(K key) {
-        return entrySet().stream()
-                .anyMatch(e -> e.getKey().equals(key));
+        return containsKey(key);
     }
 
     /**
@@ -326,11 +1092,19 @@ public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implem
      */
     public boolean removeValues(V value) {
         boolean val = false;
-        for (Entry<K, List<V>> entry : entrySet()) {
-            entry.getValue().remove(value);
-            val = true;
+        for (K key : isValueIndexed() ? getKeysWithValue(value) : keySet()) {
+            synchronized (lockFor(key)) {
+                List<V> list = lookup(key, false);
+                if (list != null && list.contains(value) && writableList(key, false).remove(value)) {
+                    indexRemove(key, value);
+                    markDirty(key);
+                    // recorded per key under its lock, so a concurrent add to the key is journaled after the removal
+                    record(journal -> journal.appendRemove(keyFunction.toInput(key), valueFunction.toInput(value)));
+                    val = true;
+                }
+            }
         }
-        if (val) writeToFile();
+        if (val) persist();
         return val;
     }
 
@@ -342,28 +1116,51 @@ public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implem
      * @see Map#remove(Object)
      */
     public List<V> removeKey(K key) {
-        List<V> remove = remove(key);
-        writeToFile();
+        List<V> remove;
+        synchronized (lockFor(key)) {
+            preserve(key, lookup(key, false));
+            remove = remove(key);
+            if (remove != null) {
+                if (isValueIndexed()) remove.forEach(value -> indexRemove(key, value));
+                record(journal -> journal.appendRemoveKey(keyFunction.toInput(key)));
+            }
+        }
+        changed(key);
         return remove;
     }
 
     public V replace(K key, int index, V value) {
-        return get(key).set(index, value);
+        V replaced;
+        synchronized (lockFor(key)) {
+            replaced = indexSet(key, writableList(key, false).set(index, value), value);
+            markDirty(key);
+            record(journal -> journal.appendSet(keyFunction.toInput(key), index, valueFunction.toInput(value)));
+        }
+        changed(key);
+        return replaced;
     }
 
     public V compute(K key, int index, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
-        return get(key).set(index, remappingFunction.apply(key, get(key).get(index)));
+        V replaced;
+        synchronized (lockFor(key)) {
+            V value = remappingFunction.apply(key, lookup(key, false).get(index));
+            replaced = indexSet(key, writableList(key, false).set(index, value), value);
+            markDirty(key);
+            record(journal -> journal.appendSet(keyFunction.toInput(key), index, valueFunction.toInput(value)));
+        }
+        changed(key);
+        return replaced;
     }
 
     public V computeIfAbsent(K key, int index, Function<? super K, ? extends V> mappingFunction) {
         if (!containsKey(key))
-            return get(key).set(index, mappingFunction.apply(key));
+            return set(key, index, mappingFunction.apply(key));
         else return null;
     }
 
     public V computeIfPresent(K key, int index, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
         if (containsKey(key))
-            return get(key).set(index, remappingFunction.apply(key, get(key).get(index)));
+            return compute(key, index, remappingFunction);
         else return null;
     }
 
@@ -376,48 +1173,574 @@ public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implem
      * @see ArrayList#remove(Object)
      */
     public boolean removeValueFromKey(K key, V value) {
-        boolean remove = get(key).remove(value);
-        writeToFile();
+        boolean remove;
+        synchronized (lockFor(key)) {
+            remove = lookup(key, false).contains(value) && writableList(key, false).remove(value);
+            if (remove) indexRemove(key, value);
+            if (remove) record(journal -> journal.appendRemove(keyFunction.toInput(key), valueFunction.toInput(value)));
+        }
+        changed(key);
         return remove;
     }
 
     /**
      * Halts this instance and asynchronally reloads the contents of the file, then continues the instance.
+     * The lists of all keys in the file are replaced with the loaded values; nothing is written back to the file.
      *
      * @see Object#wait()
      */
     public void reloadFromFile() {
         synchronized (this) {
-            ioPort.read()
-                    .forEach((key, value) -> {
-                        K keyItem = keyFunction.toOutput(key);
-                        this.putIfAbsent(keyItem, new ArrayList<>());
-                        Arrays.asList(value.split(splitWith.toString()))
-                                .forEach(item -> this.add(keyItem, valueFunction.toOutput(item)));
-                    });
+            Map<String, ?> current;
+            if (binary != null) {
+                Map<String, List<String>> lists = binary.readLists();
+                lists.forEach((key, values) -> load(key, decodeLoaded(values)));
+                current = lists;
+            } else {
+                ConcurrentHashMap<String, String> entries = ioPort.read();
+                // the segments were read in parallel, so they are converted in parallel as well
+                if (segmented != null) entries.forEach(1, (key, value) -> load(key, decodeLoaded(value)));
+                else entries.forEach((key, value) -> load(key, decodeLoaded(value)));
+                current = entries;
+            }
+            if (baseline != null) baseline = current;
+            evictOverflow();
             this.notify();
         }
     }
 
+    /**
+     * Replaces the list of a key with values that were loaded from the file.
+     *
+     * @param key    The key, as it is stored in the file.
+     * @param values The converted values, or a {@link LazyList} of the values.
+     */
+    private void load(String key, List<V> values) {
+        K keyItem = keyFunction.toOutput(key);
+        synchronized (lockFor(keyItem)) {
+            preserve(keyItem, lookup(keyItem, false));
+            List<V> previous = put(keyItem, values);
+            dirtyKeys.add(keyItem);
+            if (segmented != null) trackSegment(keyItem);
+            account(keyItem);
+            if (isValueIndexed()) {
+                if (previous != null) previous.forEach(item -> indexRemove(keyItem, item));
+                values.forEach(item -> indexAdd(keyItem, item));
+            }
+        }
+    }
+
+    /**
+     * Removes a key that disappeared from the file.
+     *
+     * @param key The key, as it was stored in the file.
+     */
+    private void unload(String key) {
+        K keyItem = keyFunction.toOutput(key);
+        synchronized (lockFor(keyItem)) {
+            preserve(keyItem, lookup(keyItem, false));
+            List<V> previous = remove(keyItem);
+            dirtyKeys.add(keyItem);
+            account(keyItem);
+            if (previous != null && isValueIndexed()) previous.forEach(item -> indexRemove(keyItem, item));
+        }
+    }
+
+    /**
+     * Converts loaded values of a key, or wraps them in a {@link LazyList} in lazy mode.
+     *
+     * @param encoded The values, as they are stored in a {@link BinaryIOPort}.
+     * @return The list to store the values of the key in.
+     */
+    private List<V> decodeLoaded(List<String> encoded) {
+        return lazy ? new LazyList<>(encoded, this::decodeValues) : decodeValues(encoded);
+    }
+
+    /**
+     * Converts loaded values of a key, or wraps them in a {@link LazyList} in lazy mode.
+     *
+     * @param joined The joined values, as they are stored in the file.
+     * @return The list to store the values of the key in.
+     */
+    private List<V> decodeLoaded(String joined) {
+        return lazy ? new LazyList<>(joined, this::decodeValues) : decodeValues(joined);
+    }
+
+    /**
+     * Converts the values of a key, as they are stored in a {@link BinaryIOPort}.
+     *
+     * @param encoded The encoded values.
+     * @return A new list with the converted values.
+     */
+    protected List<V> decodeValues(List<String> encoded) {
+        List<V> values = new ArrayList<>(encoded.size());
+        for (String item : encoded) values.add(valueFunction.toOutput(item));
+
+        return concurrent ? newList(values) : values;
+    }
+
+    /**
+     * Splits and converts the joined values of a key, as they are stored in the file.
+     * The values do not need to be tested for illegal characters, as they were split by the splitter.
+     *
+     * @param joined The joined values.
+     * @return A new list with the converted values.
+     */
+    protected List<V> decodeValues(String joined) {
+        List<V> values = new ArrayList<>();
+
+        char splitter = splitWith;
+        int start = 0, end, empty = 0;
+        do {
+            end = joined.indexOf(splitter, start);
+            String item = joined.substring(start, end == -1 ? joined.length() : end);
+            start = end + 1;
+
+            // like String#split, trailing empty items are dropped
+            if (item.isEmpty()) empty++;
+            else {
+                for (; empty > 0; empty--) values.add(valueFunction.toOutput(""));
+                values.add(valueFunction.toOutput(item));
+            }
+        } while (end != -1);
+
+        return concurrent ? newList(values) : values;
+    }
+
     /**
      * Halts this instance and asynchronally writes the contents to the file, then continues the instance.
+     * All keys are encoded again, so lists that were modified directly are written as well.
      *
      * @see Object#wait()
      */
     public void writeToFile() {
+        allDirty.set(true);
+        if (dirtySegments != null)
+            for (int segment = 0; segment < dirtySegments.length(); segment++) dirtySegments.set(segment, 1);
+        writeChanges();
+    }
+
+    /**
+     * Writes the mutations of this instance to the file.
+     * With a {@link SegmentedIOPort}, only the segments that contain mutated keys are rewritten;
+     * otherwise, all contents are written.
+     * Only the values of mutated keys are encoded again; the encodings of all other keys are reused.
+     */
+    protected void writeChanges() {
         synchronized (this) {
-            HashMap<String, String> ioWriteMap = new HashMap<>();
-            forEach((key, value) -> {
-                String ioPortValues = value.stream()
-                        .map(valueFunction::toInput)
-                        .collect(CustomCollectors.toConcatenatedString(splitWith));
-                ioWriteMap.put(keyFunction.toInput(key), ioPortValues);
+            // the flags are cleared before encoding, so a mutation during the write marks its key again
+            boolean all = allDirty.getAndSet(false);
+            if (all) {
+                dirtyKeys.clear();
+                encodings.clear();
+            } else dirtyKeys.removeIf(key -> {
+                encodings.remove(key);
+                return true;
             });
-            ioPort.write(ioWriteMap);
+
+            if (segmented != null) {
+                Map<Integer, HashMap<String, String>> partitions = new HashMap<>();
+                for (int segment = 0; segment < dirtySegments.length(); segment++)
+                    if (dirtySegments.getAndSet(segment, 0) == 1) partitions.put(segment, new HashMap<>());
+
+                if (all) {
+                    // visits every key, and adds keys that were put without a mutation to their segment
+                    forEachEncoded((key, encoded) -> partitions.get(trackSegment(key))
+                            .put(keyFunction.toInput(key), encoded));
+                } else partitions.forEach((segment, partition) -> forEachEncoded(segmentKeys.get(segment),
+                        (key, encoded) -> partition.put(keyFunction.toInput(key), encoded)));
+                if (!partitions.isEmpty()) segmented.writeSegments(partitions);
+            } else if (binary != null) {
+                HashMap<String, List<String>> ioWriteMap = new HashMap<>();
+                forEach((key, value) -> ioWriteMap.put(keyFunction.toInput(key), cached(key, value, this::encodeList)));
+                binary.writeLists(ioWriteMap);
+                if (baseline != null) baseline = ioWriteMap;
+            } else {
+                HashMap<String, String> ioWriteMap = new HashMap<>();
+                forEachEncoded((key, encoded) -> ioWriteMap.put(keyFunction.toInput(key), encoded));
+                ioPort.write(ioWriteMap);
+                if (baseline != null) baseline = ioWriteMap;
+            }
             this.notify();
         }
     }
 
+    /**
+     * Performs an action for every key and its joined values, including the keys that were evicted in bounded mode.
+     * Keys are not evicted meanwhile; the evicted keys are read first, so a key that is reloaded meanwhile is not missed.
+     *
+     * @param action The action to perform.
+     */
+    private void forEachEncoded(BiConsumer<K, String> action) {
+        Bound<K> bound = this.bound;
+        if (bound == null) {
+            forEach((key, value) -> action.accept(key, cached(key, value, this::encodeValues)));
+            return;
+        }
+
+        bound.evictLock.writeLock().lock();
+        try {
+            Map<K, String> spilled = bound.spill.readAll();
+            forEach((key, value) -> {
+                spilled.remove(key);
+                action.accept(key, cached(key, value, this::encodeValues));
+            });
+            spilled.forEach(action);
+        } finally {
+            bound.evictLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Performs an action for some keys and their joined values, including the keys that were evicted in bounded mode.
+     * Keys that are not contained anymore are removed from the given keys.
+     *
+     * @param keys   The keys to visit.
+     * @param action The action to perform.
+     */
+    private void forEachEncoded(Set<K> keys, BiConsumer<K, String> action) {
+        Bound<K> bound = this.bound;
+        if (bound != null) bound.evictLock.writeLock().lock();
+        try {
+            for (Iterator<K> iterator = keys.iterator(); iterator.hasNext(); ) {
+                K key = iterator.next();
+                String encoded;
+                // a key that is reloaded from the spill file is in neither place until its lock is released
+                synchronized (lockFor(key)) {
+                    List<V> list = super.get(key);
+                    if (list != null) encoded = cached(key, list, this::encodeValues);
+                    else encoded = bound != null ? bound.spill.get(key) : null;
+                }
+
+                if (encoded != null) action.accept(key, encoded);
+                else {
+                    iterator.remove();
+                    // a mutation that put the key again meanwhile added it before it was removed
+                    if (super.get(key) != null || bound != null && bound.spill.contains(key)) keys.add(key);
+                }
+            }
+        } finally {
+            if (bound != null) bound.evictLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the cached encoding of a key's values, or encodes and caches them if the key was mutated.
+     * Must be called while writing, so only one thread fills the cache at a time.
+     *
+     * @param key     The key of the values.
+     * @param values  The values to encode.
+     * @param encoder The function to encode the values with.
+     * @param <T>     The type of the encoded values.
+     * @return The encoded values.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T cached(K key, List<V> values, Function<List<V>, T> encoder) {
+        Object encoded = encodings.get(key);
+        if (encoded == null) {
+            encoded = encode(key, values, encoder);
+            encodings.put(key, encoded);
+        }
+        return (T) encoded;
+    }
+
+    /**
+     * Encodes the values of a key while holding the key's lock, unless the list is copy-on-write.
+     * The values of lazy lists that were not decoded yet are returned in the form they were loaded in.
+     *
+     * @param key     The key of the values.
+     * @param values  The values to encode.
+     * @param encoder The function to encode the values with.
+     * @param <T>     The type of the encoded values.
+     * @return The encoded values.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T encode(K key, List<V> values, Function<List<V>, T> encoder) {
+        // the raw values were loaded from the same port, so they have the type of the encoded values
+        if (values instanceof LazyList) {
+            Object raw = ((LazyList<?, V>) values).getRaw();
+            if (raw != null) return (T) raw;
+        }
+
+        // iterates a snapshot of the list, writers do not need to be blocked
+        if (isCopyOnWrite(values)) return encoder.apply(values);
+
+        synchronized (lockFor(key)) {
+            return encoder.apply(values);
+        }
+    }
+
+    /**
+     * Converts the values of a key, so they can be stored in a {@link BinaryIOPort}.
+     *
+     * @param values The values to convert.
+     * @return A new list with the converted values.
+     */
+    protected List<String> encodeList(List<V> values) {
+        List<String> encoded = new ArrayList<>(values.size());
+        for (V value : values) encoded.add(valueFunction.toInput(value));
+        return encoded;
+    }
+
+    /**
+     * Converts and joins the values of a key, so they can be stored in the file.
+     *
+     * @param values The values to join.
+     * @return The joined values.
+     */
+    protected String encodeValues(List<V> values) {
+        return values.stream()
+                .map(valueFunction::toInput)
+                .collect(CustomCollectors.toConcatenatedString(splitWith));
+    }
+
+    /**
+     * Called after this instance was mutated.
+     * Writes to the file directly, or marks this instance as dirty if write-behind mode is enabled.
+     * Does nothing if this instance uses a {@link JournalIOPort}, because the mutation was already appended to the journal.
+     * All keys are encoded again, and with a {@link SegmentedIOPort}, all segments are rewritten;
+     * prefer {@link #changed(Object)}.
+     */
+    protected void changed() {
+        allDirty.set(true);
+        if (dirtySegments != null)
+            for (int segment = 0; segment < dirtySegments.length(); segment++) dirtySegments.set(segment, 1);
+        persist();
+    }
+
+    /**
+     * Called after a key of this instance was mutated.
+     * Writes to the file directly, or marks this instance as dirty if write-behind mode is enabled.
+     * Only the values of the key are encoded again, and with a {@link SegmentedIOPort},
+     * only the segment of the key is rewritten.
+     *
+     * @param key The mutated key.
+     * @see #changed()
+     */
+    protected void changed(K key) {
+        markDirty(key);
+        account(key);
+        persist();
+    }
+
+    /**
+     * Marks a key as dirty, and its segment, if this instance uses a {@link SegmentedIOPort}.
+     *
+     * @param key The mutated key.
+     */
+    private void markDirty(K key) {
+        dirtyKeys.add(key);
+        if (segmented != null) dirtySegments.set(trackSegment(key), 1);
+    }
+
+    /**
+     * Adds a key to the keys of its segment.
+     *
+     * @param key The key.
+     * @return the segment of the key.
+     */
+    private int trackSegment(K key) {
+        int segment = segmented.segmentOf(keyFunction.toInput(key));
+        segmentKeys.get(segment).add(key);
+        return segment;
+    }
+
+    /**
+     * Writes the mutations to the file, or counts them if write-behind mode is enabled.
+     */
+    private void persist() {
+        if (journal != null || batchOwner == Thread.currentThread()) return;
+
+        if (!writeBehind) {
+            writeChanges();
+            return;
+        }
+
+        if (dirtyCount.incrementAndGet() >= dirtyThreshold
+                && dirtyThreshold > 0
+                && flushQueued.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // closed concurrently; close() performs the final flush
+                flushQueued.set(false);
+            }
+        }
+    }
+
+    /**
+     * Estimates the heap size of the values of a key, for bounded mode.
+     * The estimate is rough: a fixed size per key and per value, or twice the length of values that were not decoded.
+     *
+     * @param values The values of a key.
+     * @return The estimated size of the values, in bytes.
+     * @see #bounded(int, long, File)
+     */
+    protected long estimateBytes(List<V> values) {
+        if (values instanceof LazyList) {
+            Object raw = ((LazyList<?, V>) values).getRaw();
+            if (raw instanceof String) return ESTIMATED_KEY_BYTES + 2L * ((String) raw).length();
+        }
+        return ESTIMATED_KEY_BYTES + ESTIMATED_VALUE_BYTES * (long) values.size();
+    }
+
+    /**
+     * Updates the estimated size of a key in bounded mode, marks it as recently used,
+     * and evicts the least recently used keys if a bound is exceeded.
+     *
+     * @param key The key that was loaded, mutated or removed.
+     */
+    private void account(K key) {
+        Bound<K> bound = this.bound;
+        if (bound == null) return;
+
+        List<V> list = super.get(key);
+        long bytes = list == null ? 0 : estimateBytes(list);
+        synchronized (bound.resident) {
+            if (list == null) bound.dismiss(key);
+            else bound.admit(key, bytes);
+        }
+        evictOverflow();
+    }
+
+    /**
+     * Reloads a key that was evicted in bounded mode.
+     *
+     * @param bound The bound of this instance.
+     * @param key   The key to reload.
+     * @param count Whether to count the reload as a cache miss.
+     * @return The list of the key, or null if the key is not contained.
+     */
+    @SuppressWarnings("unchecked")
+    private @Nullable List<V> restore(Bound<K> bound, Object key, boolean count) {
+        // the key may have been reloaded by disabling bounded mode meanwhile
+        if (!bound.spill.contains(key)) return super.get(key);
+
+        K keyItem = (K) key;
+        List<V> list;
+        synchronized (lockFor(keyItem)) {
+            list = super.get(keyItem);
+            if (list == null) {
+                String encoded = bound.spill.take(keyItem);
+                if (encoded == null) return null;
+
+                list = decodeLoaded(encoded);
+                put(keyItem, list);
+                encodings.put(keyItem, encoded);
+                if (count) bound.misses.increment();
+            }
+        }
+        account(keyItem);
+        return list;
+    }
+
+    /**
+     * Evicts the least recently used keys to the spill file until no bound is exceeded.
+     * Does nothing while snapshots are open, and while the calling thread holds a lock of a key;
+     * the keys are evicted on a later call instead, as the locks of the evicted keys must be taken.
+     */
+    private void evictOverflow() {
+        Bound<K> bound = this.bound;
+        if (bound == null || !bound.isExceeded() || !openSnapshots.isEmpty()) return;
+        for (Object lock : locks) if (Thread.holdsLock(lock)) return;
+        // keys are not evicted while they are written
+        if (!bound.evictLock.readLock().tryLock()) return;
+
+        try {
+            // bounded mode was disabled meanwhile, and the spill file is closed
+            if (this.bound != bound) return;
+            K victim;
+            while ((victim = bound.eldest()) != null) evict(bound, victim);
+        } finally {
+            bound.evictLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Evicts a key to the spill file.
+     *
+     * @param bound The bound of this instance.
+     * @param key   The key to evict.
+     */
+    private void evict(Bound<K> bound, K key) {
+        synchronized (lockFor(key)) {
+            List<V> list = super.get(key);
+            if (list == null) return;
+            // a snapshot was taken meanwhile; it must still find the key
+            if (!openSnapshots.isEmpty()) {
+                synchronized (bound.resident) {
+                    bound.admit(key, estimateBytes(list));
+                }
+                return;
+            }
+
+            bound.spill.put(key, encode(key, list, this::encodeValues));
+            remove(key);
+            encodings.remove(key);
+            bound.evictions.increment();
+        }
+    }
+
+    /**
+     * Adds one occurrence of a value at a key to the reverse value index, if it is enabled.
+     *
+     * @param key   The key the value was added to.
+     * @param value The added value.
+     */
+    private void indexAdd(K key, V value) {
+        ConcurrentHashMap<V, ConcurrentHashMap<K, Integer>> index = valueIndex;
+        if (index == null || value == null) return;
+
+        index.compute(value, (v, keys) -> {
+            if (keys == null) keys = new ConcurrentHashMap<>();
+            keys.merge(key, 1, Integer::sum);
+            return keys;
+        });
+    }
+
+    /**
+     * Removes one occurrence of a value at a key from the reverse value index, if it is enabled.
+     *
+     * @param key   The key the value was removed from.
+     * @param value The removed value.
+     */
+    private void indexRemove(K key, V value) {
+        ConcurrentHashMap<V, ConcurrentHashMap<K, Integer>> index = valueIndex;
+        if (index == null || value == null) return;
+
+        index.computeIfPresent(value, (v, keys) -> {
+            keys.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    /**
+     * Updates the reverse value index after a value was replaced by another one.
+     *
+     * @param key      The key the value was replaced at.
+     * @param previous The value that was replaced.
+     * @param value    The new value.
+     * @return The value that was replaced.
+     */
+    private V indexSet(K key, V previous, V value) {
+        indexRemove(key, previous);
+        indexAdd(key, value);
+        return previous;
+    }
+
+    /**
+     * Appends a record of a mutation to the journal, if this instance uses a {@link JournalIOPort}.
+     * Must be called while holding the lock of the mutated key, so that records of one key keep their order.
+     *
+     * @param recorder A consumer that appends the record to the journal.
+     */
+    private void record(Consumer<JournalIOPort> recorder) {
+        if (journal == null) return;
+
+        if (batchOwner == Thread.currentThread()) batchRecords.add(recorder);
+        else recorder.accept(journal);
+    }
+
     /**
      * Selects a splitter Character.
      *
@@ -439,6 +1762,9 @@ public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implem
      * @param value A nullable value to test for.
      */
     private void testForIllegalCharacters(@Nullable V value) {
+        // the values of binary files are length-prefixed instead of split
+        if (binary != null) return;
+
         if (value == null) {
             forEach((key, lists) -> lists.forEach(this::testForIllegalCharacters));
         } else {
@@ -453,57 +1779,481 @@ public class PropertiesMapper<K, V> extends ConcurrentHashMap<K, List<V>> implem
      * Puts a list to the given key, if no list is there yet.
      *
      * @param atKey The key to put the list to.
-     * @see Map#putIfAbsent(Object, Object)
+     * @return The list at the given key.
+     * @see Map#computeIfAbsent(Object, Function)
+     */
+    List<V> provideList(K atKey) {
+        List<V> list = lookup(atKey, false);
+        if (list != null) return list;
+
+        // a new key must be hidden from open snapshots
+        synchronized (lockFor(atKey)) {
+            return writableList(atKey, true);
+        }
+    }
+
+    /**
+     * Gets the list of a key to mutate. Must be called while holding the lock of the key.
+     * If a snapshot may still see the current list, it is kept for the snapshots, and is replaced with a copy.
+     *
+     * @param key    The key to get the list of.
+     * @param create Whether to create the list if the key is not contained.
+     * @return The list to mutate; null if the key is not contained and {@code create} is false.
+     */
+    private @Nullable List<V> writableList(K key, boolean create) {
+        List<V> list = lookup(key, false);
+        if (list == null && !create) return null;
+
+        if (preserve(key, list)) {
+            List<V> copy = newList(list == null ? Collections.emptyList() : list);
+            put(key, copy);
+            return copy;
+        }
+        return list != null ? list : computeIfAbsent(key, k -> newList(Collections.emptyList()));
+    }
+
+    /**
+     * Keeps the current list of a key for the open snapshots, unless it was already kept since the last snapshot.
+     * Must be called while holding the lock of the key, before the list is replaced or removed.
+     *
+     * @param key  The key of the list.
+     * @param list The current list of the key; null if the key is not contained.
+     * @return whether the list was kept, and must not be modified anymore.
+     */
+    private boolean preserve(K key, @Nullable List<V> list) {
+        if (openSnapshots.isEmpty()) return false;
+
+        long current = epoch;
+        Version<V> newest = history.get(key);
+        if (newest != null && newest.epoch == current) return false;
+
+        history.compute(key, (k, older) -> new Version<>(current, list, older));
+        return true;
+    }
+
+    /**
+     * Drops the kept lists that no open snapshot can see anymore.
+     */
+    private void prune() {
+        long oldest = epoch;
+        if (!openSnapshots.isEmpty()) oldest = Math.min(oldest, openSnapshots.first());
+
+        long keep = oldest;
+        for (K key : history.keySet()) history.computeIfPresent(key, (k, newest) -> newest.trim(keep));
+    }
+
+    /**
+     * Runs an action while holding all lock stripes.
+     *
+     * @param stripe The first stripe to lock.
+     * @param action The action to run.
+     */
+    private void withAllLocks(int stripe, Runnable action) {
+        if (stripe == locks.length) {
+            action.run();
+            return;
+        }
+
+        synchronized (locks[stripe]) {
+            withAllLocks(stripe + 1, action);
+        }
+    }
+
+    /**
+     * Creates a new list to store the values of a key in.
+     *
+     * @param values The initial values of the list.
+     * @return A new list; a {@link CopyOnWriteArrayList} in concurrent mode.
+     */
+    protected List<V> newList(Collection<V> values) {
+        return concurrent ? new CopyOnWriteArrayList<>(values) : new ArrayList<>(values);
+    }
+
+    /**
+     * Checks whether a list of values is copy-on-write, so it can be read without holding the key's lock.
+     *
+     * @param values The list to check.
+     * @return whether the list is copy-on-write.
+     */
+    protected boolean isCopyOnWrite(List<V> values) {
+        return values instanceof CopyOnWriteArrayList;
+    }
+
+    /**
+     * Gets the object to synchronize on while the list of the given key is modified.
+     * Keys are spread over a fixed amount of lock stripes, so writers of different keys rarely contend.
+     * Writing to the file synchronizes on the same locks, unless concurrent mode is enabled.
+     *
+     * @param key The key to get the lock for.
+     * @return The lock object of the key.
+     */
+    protected Object lockFor(K key) {
+        int hash = key == null ? 0 : key.hashCode();
+        return locks[(hash ^ (hash >>> 16)) & (locks.length - 1)];
+    }
+
+    /**
+     * Calculates the amount of lock stripes; a power of two that is at least four times the amount of processors.
+     *
+     * @return The amount of lock stripes.
      */
-    void provideList(K atKey) {
-        putIfAbsent(atKey, new ArrayList<>());
+    private static int lockStripes() {
+        int stripes = 16;
+        while (stripes < Runtime.getRuntime().availableProcessors() * 4) stripes <<= 1;
+        return stripes;
     }
 
     /**
      * Returns an iterator to iterate this instance.
+     * The values are not copied; the iterator walks the lists of all keys one after another.
      *
      * @return An iterator that iterates through all sub-items from all the lists in the map.
      */
     @Override
     public Iterator<V> iterator() {
         return new Iterator<V>() {
-            List<V> allValues = new ArrayList<V>() {{
-                for (Entry<K, List<V>> entry : PropertiesMapper.super.entrySet()) {
-                    this.addAll(entry.getValue());
-                }
-            }};
-            int bigIndex = 0;
+            private final Iterator<List<V>> lists = values().iterator();
+            private Iterator<V> current = Collections.emptyIterator();
 
             @Override
             public boolean hasNext() {
-                return allValues.size() < bigIndex;
+                while (!current.hasNext() && lists.hasNext()) current = lists.next().iterator();
+                return current.hasNext();
             }
 
             @Override
             public V next() {
-                V value = allValues.get(bigIndex);
-                bigIndex++;
-                return value;
+                if (!hasNext()) throw new NoSuchElementException();
+                return current.next();
             }
         };
     }
 
     @Override
     public void forEach(Consumer<? super V> action) {
-        while (iterator().hasNext()) {
-            action.accept(iterator().next());
+        for (List<V> list : values()) {
+            list.forEach(action);
         }
     }
 
     /**
      * Returns a spliterator for this instance.
+     * The spliterator is {@link Spliterator#SIZED} and {@link Spliterator#SUBSIZED}, and splits over the keys first,
+     * then over the values of single keys.
+     * The sizes are exact as long as the lists are not modified while the spliterator is in use;
+     * in concurrent mode, every list is traversed in the state it had when the spliterator was created.
      *
      * @return a spliterator for this instance.
-     * @throws UnsupportedOperationException Always, because there is no spliterator implemented.
      */
+    @SuppressWarnings("unchecked")
     @Override
     public Spliterator<V> spliterator() {
-        throw new UnsupportedOperationException("Spliterators not implemented yet.");
+        return new ValueSpliterator<>(values().stream()
+                .map(List::spliterator)
+                .toArray(Spliterator[]::new));
+    }
+
+    /**
+     * Returns a sequential stream of the values of all keys.
+     *
+     * @return a stream of all values.
+     * @see #spliterator()
+     */
+    public Stream<V> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel stream of the values of all keys.
+     *
+     * @return a parallel stream of all values.
+     * @see #spliterator()
+     */
+    public Stream<V> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * This class represents an immutable, point-in-time view of a PropertiesMapper.
+     * It sees the lists of all keys as they were when it was taken, no matter how the mapper is mutated afterwards.
+     *
+     * @see #snapshot()
+     */
+    public final class Snapshot implements Iterable<V>, AutoCloseable {
+        private final long epoch;
+        private volatile boolean closed = false;
+
+        private Snapshot(long epoch) {
+            this.epoch = epoch;
+        }
+
+        /**
+         * Gets the values of a key.
+         *
+         * @param key The key to look at.
+         * @return An unmodifiable list of the values, or null if the key was not contained.
+         * @throws IllegalStateException If this snapshot is closed.
+         */
+        public @Nullable List<V> get(K key) {
+            List<V> list = resolve(key, PropertiesMapper.this.get(key));
+            return list == null ? null : Collections.unmodifiableList(list);
+        }
+
+        /**
+         * Checks whether a key was contained.
+         *
+         * @param key The key to check for.
+         * @return whether the key was contained.
+         * @throws IllegalStateException If this snapshot is closed.
+         */
+        public boolean containsKey(K key) {
+            return resolve(key, lookup(key, false)) != null;
+        }
+
+        /**
+         * Performs an action for every key and its values.
+         *
+         * @param action The action to perform, with the key and an unmodifiable list of its values.
+         * @throws IllegalStateException If this snapshot is closed.
+         */
+        public void forEach(BiConsumer<? super K, ? super List<V>> action) {
+            Iterator<Entry<K, List<V>>> entries = entryIterator();
+            while (entries.hasNext()) {
+                Entry<K, List<V>> entry = entries.next();
+                action.accept(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+            }
+        }
+
+        /**
+         * Collects the keys that were contained.
+         *
+         * @return A new set of the keys.
+         * @throws IllegalStateException If this snapshot is closed.
+         */
+        public Set<K> keySet() {
+            Set<K> keys = new HashSet<>();
+            entryIterator().forEachRemaining(entry -> keys.add(entry.getKey()));
+            return keys;
+        }
+
+        /**
+         * Returns an iterator over the values of all keys.
+         *
+         * @return An iterator that iterates through all sub-items from all the lists in the snapshot.
+         * @throws IllegalStateException If this snapshot is closed.
+         */
+        @Override
+        public Iterator<V> iterator() {
+            Iterator<Entry<K, List<V>>> entries = entryIterator();
+            return new Iterator<V>() {
+                private Iterator<V> current = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext() && entries.hasNext()) current = entries.next().getValue().iterator();
+                    return current.hasNext();
+                }
+
+                @Override
+                public V next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return current.next();
+                }
+            };
+        }
+
+        /**
+         * Returns a sequential stream of the values of all keys.
+         *
+         * @return a stream of all values.
+         * @throws IllegalStateException If this snapshot is closed.
+         */
+        public Stream<V> stream() {
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED), false);
+        }
+
+        /**
+         * Closes this snapshot, so the lists that were kept for it can be dropped.
+         */
+        @Override
+        public void close() {
+            if (closed) return;
+
+            closed = true;
+            openSnapshots.remove(epoch);
+            prune();
+        }
+
+        /**
+         * Gets the list that this snapshot sees for a key.
+         * The live list must be read before the kept lists: a writer keeps the list before it replaces it.
+         *
+         * @param key  The key to look at.
+         * @param live The current list of the key.
+         * @return the list this snapshot sees, or null if the key was not contained.
+         */
+        private @Nullable List<V> resolve(K key, @Nullable List<V> live) {
+            if (closed) throw new IllegalStateException("The snapshot is closed!");
+
+            // the oldest list that was kept after this snapshot was taken, is the list at the time of the snapshot
+            Version<V> version = history.get(key), found = null;
+            for (; version != null && version.epoch > epoch; version = version.older) found = version;
+
+            return found == null ? live : found.list;
+        }
+
+        /**
+         * Iterates the keys that have kept lists first, so that keys which get a kept list while the live keys are
+         * iterated are not visited twice.
+         *
+         * @return An iterator of all keys and the lists this snapshot sees.
+         */
+        private Iterator<Entry<K, List<V>>> entryIterator() {
+            if (closed) throw new IllegalStateException("The snapshot is closed!");
+
+            Set<K> visited = new HashSet<>();
+            Iterator<K> kept = history.keySet().iterator();
+            Iterator<Entry<K, List<V>>> live = PropertiesMapper.this.entrySet().iterator();
+            return new Iterator<Entry<K, List<V>>>() {
+                private @Nullable Entry<K, List<V>> next;
+
+                @Override
+                public boolean hasNext() {
+                    while (next == null && kept.hasNext()) {
+                        K key = kept.next();
+                        visited.add(key);
+                        List<V> list = resolve(key, lookup(key, false));
+                        if (list != null) next = new SimpleImmutableEntry<>(key, list);
+                    }
+                    while (next == null && live.hasNext()) {
+                        Entry<K, List<V>> entry = live.next();
+                        if (visited.contains(entry.getKey())) continue;
+                        List<V> list = resolve(entry.getKey(), entry.getValue());
+                        if (list != null) next = new SimpleImmutableEntry<>(entry.getKey(), list);
+                    }
+                    return next != null;
+                }
+
+                @Override
+                public Entry<K, List<V>> next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    Entry<K, List<V>> entry = next;
+                    next = null;
+                    return entry;
+                }
+            };
+        }
+    }
+
+    /**
+     * This class represents the state of bounded mode: the keys in memory in the order of their last use,
+     * their estimated size, the spill file of evicted keys, and the counters.
+     * The keys in memory are guarded by synchronizing on {@link #resident}.
+     *
+     * @param <K> The type of the keys.
+     */
+    private static final class Bound<K> {
+        private final int maxKeys;
+        private final long maxBytes;
+        private final SpillFile<K> spill;
+        private final LinkedHashMap<K, Long> resident = new LinkedHashMap<>(16, 0.75f, true);
+        private final ReentrantReadWriteLock evictLock = new ReentrantReadWriteLock();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+        private long residentBytes = 0;
+
+        private Bound(int maxKeys, long maxBytes, SpillFile<K> spill) {
+            this.maxKeys = maxKeys;
+            this.maxBytes = maxBytes;
+            this.spill = spill;
+        }
+
+        /**
+         * Adds a key, or updates its size, and marks it as the most recently used key.
+         * Must be called while synchronizing on {@link #resident}.
+         */
+        private void admit(K key, long bytes) {
+            Long previous = resident.put(key, bytes);
+            residentBytes += bytes - (previous == null ? 0 : previous);
+        }
+
+        /**
+         * Removes a key that is not in memory anymore. Must be called while synchronizing on {@link #resident}.
+         */
+        private void dismiss(K key) {
+            Long previous = resident.remove(key);
+            if (previous != null) residentBytes -= previous;
+        }
+
+        /**
+         * Marks a key as the most recently used key, and counts the hit if requested.
+         */
+        private void touch(Object key, boolean count) {
+            if (count) hits.increment();
+            synchronized (resident) {
+                resident.get(key);
+            }
+        }
+
+        private boolean isExceeded() {
+            synchronized (resident) {
+                return maxKeys > 0 && resident.size() > maxKeys || maxBytes > 0 && residentBytes > maxBytes;
+            }
+        }
+
+        /**
+         * Removes the least recently used key, if a bound is exceeded.
+         *
+         * @return The least recently used key, or null if no bound is exceeded.
+         */
+        private @Nullable K eldest() {
+            synchronized (resident) {
+                if (!(maxKeys > 0 && resident.size() > maxKeys || maxBytes > 0 && residentBytes > maxBytes))
+                    return null;
+
+                K key = resident.keySet().iterator().next();
+                dismiss(key);
+                return key;
+            }
+        }
+    }
+
+    /**
+     * This class represents a list of a key that was kept for snapshots, before the key was mutated.
+     *
+     * @param <V> The value type.
+     */
+    private static final class Version<V> {
+        private final long epoch;
+        private final @Nullable List<V> list;
+        private final @Nullable Version<V> older;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param epoch The epoch of the first mutation after the list was kept.
+         * @param list  The kept list; null if the key was not contained.
+         * @param older The next older kept list of the key.
+         */
+        private Version(long epoch, @Nullable List<V> list, @Nullable Version<V> older) {
+            this.epoch = epoch;
+            this.list = list;
+            this.older = older;
+        }
+
+        /**
+         * Drops the kept lists that no snapshot taken at or after the given epoch can see.
+         *
+         * @param oldest The epoch of the oldest open snapshot.
+         * @return This version without the dropped lists; null if all of them were dropped.
+         */
+        private @Nullable Version<V> trim(long oldest) {
+            if (epoch <= oldest) return null;
+
+            Version<V> trimmed = older == null ? null : older.trim(oldest);
+            return trimmed == older ? this : new Version<>(epoch, list, trimmed);
+        }
     }
 
     @SuppressWarnings("FinalStaticMethod")
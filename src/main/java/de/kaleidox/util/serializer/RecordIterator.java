@@ -0,0 +1,177 @@
+package de.kaleidox.util.serializer;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class represents an iterator over the records of a {@link Reader}, split by a regex.
+ * The records are the same as those of {@link String#split(String)}, including dropped trailing empty records,
+ * but the content is read in chunks, so only the current record and one chunk are held in memory.
+ * Regexes without special characters are searched for literally, without a {@link Matcher}.
+ */
+class RecordIterator implements Iterator<String> {
+    private final static String SPECIAL_CHARACTERS = "\\^$.|?*+()[]{}";
+
+    private final Reader reader;
+    private final char[] chunk;
+    private final @Nullable String literal;
+    private final @Nullable Matcher matcher;
+    private final StringBuilder buffer = new StringBuilder();
+    private int start = 0;
+    private int searchFrom = 0;
+    private boolean eof = false;
+    private boolean exhausted = false;
+    private boolean split = false;
+    private boolean emitted = false;
+    private int emptyRecords = 0;
+    private @Nullable String queued;
+    private @Nullable String next;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param reader    The reader to read from.
+     * @param splitWith A regex to split the content apart.
+     * @param chunkSize The amount of characters to read at once.
+     */
+    RecordIterator(Reader reader, String splitWith, int chunkSize) {
+        this.reader = reader;
+        this.chunk = new char[chunkSize];
+        if (isLiteral(splitWith)) {
+            this.literal = splitWith;
+            this.matcher = null;
+        } else {
+            this.literal = null;
+            this.matcher = Pattern.compile(splitWith).matcher(buffer)
+                    .useTransparentBounds(true)
+                    .useAnchoringBounds(false);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) next = advance();
+        return next != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        String record = next;
+        next = null;
+        return record;
+    }
+
+    /**
+     * Gets the next record to return; empty records are held back until a non-empty record follows them.
+     *
+     * @return the next record, or null if there are no more records.
+     */
+    private @Nullable String advance() {
+        if (emptyRecords > 0 && queued != null) {
+            emptyRecords--;
+            return "";
+        }
+        if (queued != null) {
+            String record = queued;
+            queued = null;
+            return record;
+        }
+
+        String record;
+        while ((record = readRecord()) != null) {
+            if (record.isEmpty()) {
+                emptyRecords++;
+            } else if (emptyRecords > 0) {
+                queued = record;
+                emptyRecords--;
+                emitted = true;
+                return "";
+            } else {
+                emitted = true;
+                return record;
+            }
+        }
+
+        // like String#split, content without a delimiter is returned as is, even if it is empty
+        if (!split && !emitted) {
+            emitted = true;
+            return "";
+        }
+        return null;
+    }
+
+    /**
+     * Reads the next raw record.
+     *
+     * @return the next record, or null if the content was read completely.
+     */
+    private @Nullable String readRecord() {
+        if (exhausted) return null;
+
+        while (true) {
+            int from, to;
+            if (literal != null) {
+                from = buffer.indexOf(literal, Math.max(start, searchFrom));
+                to = from + literal.length();
+                if (from == -1) searchFrom = Math.max(start, buffer.length() - literal.length() + 1);
+            } else {
+                from = to = -1;
+                matcher.region(start, buffer.length());
+                boolean found = matcher.find();
+                // a zero-width match at the start of a record does not split
+                while (found && matcher.end() == start) found = matcher.find();
+                if (found && (eof || !matcher.hitEnd())) {
+                    from = matcher.start();
+                    to = matcher.end();
+                }
+            }
+
+            if (from != -1) {
+                String record = buffer.substring(start, from);
+                start = to;
+                split = true;
+                return record;
+            }
+
+            if (eof) {
+                exhausted = true;
+                return buffer.substring(start);
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Drops the records that were already returned from the buffer, then reads the next chunk.
+     */
+    private void fill() {
+        if (start > 0) {
+            buffer.delete(0, start);
+            searchFrom = Math.max(0, searchFrom - start);
+            start = 0;
+        }
+
+        try {
+            int read = reader.read(chunk);
+            if (read == -1) eof = true;
+            else buffer.append(chunk, 0, read);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isLiteral(String regex) {
+        if (regex.isEmpty()) return false;
+        for (int i = 0; i < regex.length(); i++)
+            if (SPECIAL_CHARACTERS.indexOf(regex.charAt(i)) != -1) return false;
+        return true;
+    }
+}
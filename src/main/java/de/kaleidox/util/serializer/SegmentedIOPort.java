@@ -0,0 +1,140 @@
+package de.kaleidox.util.serializer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * This class represents an IO Port that partitions the keys of a {@link PropertiesMapper} across several IO Ports,
+ * for example one {@code .properties} file per segment. Every key is stored in the segment of its hash.
+ * All segments are read in parallel.
+ * <p>
+ * A PropertiesMapper remembers which segments contain mutated keys, and only rewrites those segments.
+ */
+public class SegmentedIOPort extends IOPort<ConcurrentHashMap<String, String>, Map<String, String>> {
+    private final List<IOPort<ConcurrentHashMap<String, String>, Map<String, String>>> segments;
+
+    /**
+     * Creates a new instance that stores every segment in a {@code .properties} file.
+     * The files are named {@code <name>.<segment>.properties}, and are created if they do not exist.
+     *
+     * @param directory The directory to store the files in. Is created if it does not exist.
+     * @param name      The name of the files.
+     * @param segments  The amount of segments.
+     * @throws IllegalArgumentException If the amount of segments is less than 1.
+     * @throws UncheckedIOException     If a file could not be created.
+     */
+    public SegmentedIOPort(File directory, String name, int segments) {
+        this(filePorts(directory, name, segments));
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param segments The IO Ports of the segments. The order of the ports must be the same every time.
+     * @throws IllegalArgumentException If no segments are given.
+     */
+    public SegmentedIOPort(List<IOPort<ConcurrentHashMap<String, String>, Map<String, String>>> segments) {
+        super(null, null);
+        if (segments.isEmpty()) throw new IllegalArgumentException("At least one segment is required!");
+
+        this.segments = Collections.unmodifiableList(new ArrayList<>(segments));
+    }
+
+    /**
+     * Gets the amount of segments.
+     *
+     * @return the amount of segments.
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Gets the IO Port of a segment.
+     *
+     * @param segment The segment.
+     * @return the IO Port that the segment is read from and written to.
+     */
+    public IOPort<ConcurrentHashMap<String, String>, Map<String, String>> getSegment(int segment) {
+        return segments.get(segment);
+    }
+
+    /**
+     * Gets the segment that a key is stored in.
+     * The segment only depends on the key's {@link String#hashCode()}, so it is the same in every run.
+     *
+     * @param key The key, as it is stored in the file.
+     * @return the segment of the key.
+     */
+    public int segmentOf(String key) {
+        int hash = key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), segments.size());
+    }
+
+    /**
+     * Reads all segments in parallel.
+     *
+     * @return A map with the entries of all segments.
+     */
+    @Override
+    public ConcurrentHashMap<String, String> read() {
+        ConcurrentHashMap<String, String> entries = new ConcurrentHashMap<>();
+        IntStream.range(0, segments.size())
+                .parallel()
+                .forEach(segment -> entries.putAll(segments.get(segment).read()));
+        return entries;
+    }
+
+    /**
+     * Writes all segments in parallel.
+     *
+     * @param item The entries of all segments.
+     */
+    @Override
+    public void write(Map<String, String> item) {
+        Map<Integer, Map<String, String>> partitions = new HashMap<>();
+        for (int segment = 0; segment < segments.size(); segment++) partitions.put(segment, new HashMap<>());
+        item.forEach((key, value) -> partitions.get(segmentOf(key)).put(key, value));
+
+        writeSegments(partitions);
+    }
+
+    /**
+     * Writes some segments in parallel. Segments that are not given are not written.
+     *
+     * @param partitions A map of the segments to write, to all entries of that segment.
+     */
+    public void writeSegments(Map<Integer, ? extends Map<String, String>> partitions) {
+        partitions.entrySet()
+                .parallelStream()
+                .forEach(partition -> segments.get(partition.getKey()).write(partition.getValue()));
+    }
+
+    private static List<IOPort<ConcurrentHashMap<String, String>, Map<String, String>>> filePorts(
+            File directory, String name, int segments) {
+        if (segments < 1) throw new IllegalArgumentException("At least one segment is required!");
+        if (!directory.exists() && !directory.mkdirs())
+            throw new IllegalArgumentException("Could not create directory " + directory);
+
+        List<IOPort<ConcurrentHashMap<String, String>, Map<String, String>>> ports = new ArrayList<>(segments);
+        for (int segment = 0; segment < segments; segment++) {
+            File file = new File(directory, name + "." + segment + ".properties");
+            try {
+                //noinspection ResultOfMethodCallIgnored
+                file.createNewFile();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            ports.add(IOPort.mapPort(file));
+        }
+        return ports;
+    }
+}
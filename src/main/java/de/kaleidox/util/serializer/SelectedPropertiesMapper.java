@@ -6,12 +6,40 @@ import de.kaleidox.util.functional.DoubleFunction;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.function.LongBinaryOperator;
 import java.util.function.Predicate;
+import java.util.function.ToDoubleBiFunction;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntBiFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongBiFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
 
+/**
+ * This class represents a view of a {@link PropertiesMapper} with a selected key.
+ * The view holds no entries itself: all methods are forwarded to the parent mapper, including the methods of
+ * {@link Map} and {@link ConcurrentHashMap}, which cover all keys of the parent like the methods that take a key do.
+ * So the view and the parent always see the same lists, and write to the same IO Port.
+ * Creating a view does not read the file.
+ */
 public class SelectedPropertiesMapper<K, V> extends PropertiesMapper<K, V> implements Iterable<V> {
+    final PropertiesMapper<K, V> parent;
     final K key;
 
     public SelectedPropertiesMapper(
@@ -28,11 +56,32 @@ public class SelectedPropertiesMapper<K, V> extends PropertiesMapper<K, V> imple
             @Nullable Character splitWith,
             DoubleFunction<String, K> keyFunction,
             DoubleFunction<String, V> valueFunction) {
-        super(ioPort, splitWith, keyFunction, valueFunction);
+        this(new PropertiesMapper<>(ioPort, splitWith, keyFunction, valueFunction), key);
+    }
+
+    /**
+     * Creates a new view of a mapper.
+     *
+     * @param parent The mapper to view.
+     * @param key    The key to select.
+     * @see PropertiesMapper#select(Object)
+     */
+    public SelectedPropertiesMapper(PropertiesMapper<K, V> parent, K key) {
+        super(parent);
 
+        this.parent = parent;
         this.key = key;
     }
 
+    /**
+     * Gets the viewed mapper.
+     *
+     * @return The mapper that this view forwards to.
+     */
+    public PropertiesMapper<K, V> getParent() {
+        return parent;
+    }
+
     /**
      * Gets the splitter character.
      *
@@ -137,13 +186,7 @@ public class SelectedPropertiesMapper<K, V> extends PropertiesMapper<K, V> imple
      * @return whether the item could be added. This is false, if the predicate tested false.
      */
     public boolean addIfPredicate(V value, Predicate<PropertiesMapper<K, V>> mapPredicate) {
-        provideList(key);
-        if (mapPredicate.test(this)) {
-            boolean add = get(key).add(value);
-            if (add) writeToFile();
-            return add;
-        }
-        return false;
+        return addIfPredicate(key, value, mapPredicate);
     }
 
     /**
@@ -183,13 +226,7 @@ public class SelectedPropertiesMapper<K, V> extends PropertiesMapper<K, V> imple
      * @see ArrayList#set(int, Object)
      */
     public boolean setIfPredicate(int index, V value, Predicate<PropertiesMapper<K, V>> mapPredicate) {
-        provideList(key);
-        if (mapPredicate.test(this)) {
-            get(key).set(index, value);
-            writeToFile();
-            return true;
-        }
-        return false;
+        return setIfPredicate(key, index, value, mapPredicate);
     }
 
     /**
@@ -205,4 +242,617 @@ public class SelectedPropertiesMapper<K, V> extends PropertiesMapper<K, V> imple
     public boolean setToCoordinates(int index, V value) {
         return setToCoordinates(key, index, value);
     }
+
+    @Override
+    public synchronized PropertiesMapper<K, V> writeBehind(long interval, TimeUnit unit, int dirtyThreshold) {
+        parent.writeBehind(interval, unit, dirtyThreshold);
+        return this;
+    }
+
+    @Override
+    public boolean isWriteBehind() {
+        return parent.isWriteBehind();
+    }
+
+    @Override
+    public boolean isDirty() {
+        return parent.isDirty();
+    }
+
+    @Override
+    public void flush() {
+        parent.flush();
+    }
+
+    @Override
+    public void close() {
+        parent.close();
+    }
+
+    @Override
+    public synchronized PropertiesMapper<K, V> watch(File file) {
+        parent.watch(file);
+        return this;
+    }
+
+    @Override
+    public synchronized void stopWatching() {
+        parent.stopWatching();
+    }
+
+    @Override
+    public synchronized boolean isWatching() {
+        return parent.isWatching();
+    }
+
+    @Override
+    public void reloadChanges() {
+        parent.reloadChanges();
+    }
+
+    @Override
+    public synchronized PropertiesMapper<K, V> concurrent() {
+        parent.concurrent();
+        return this;
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return parent.isConcurrent();
+    }
+
+    @Override
+    public synchronized PropertiesMapper<K, V> indexValues() {
+        parent.indexValues();
+        return this;
+    }
+
+    @Override
+    public boolean isValueIndexed() {
+        return parent.isValueIndexed();
+    }
+
+    @Override
+    public synchronized PropertiesMapper<K, V> bounded(int maxKeys, long maxBytes, File spillFile) {
+        parent.bounded(maxKeys, maxBytes, spillFile);
+        return this;
+    }
+
+    @Override
+    public synchronized PropertiesMapper<K, V> unbounded() {
+        parent.unbounded();
+        return this;
+    }
+
+    @Override
+    public boolean isBounded() {
+        return parent.isBounded();
+    }
+
+    @Override
+    public long getHitCount() {
+        return parent.getHitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return parent.getMissCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return parent.getEvictionCount();
+    }
+
+    @Override
+    public Set<K> getKeysWithValue(V value) {
+        return parent.getKeysWithValue(value);
+    }
+
+    @Override
+    public SelectedPropertiesMapper<K, V> select(K key) {
+        return parent.select(key);
+    }
+
+    @Override
+    public PropertiesMapper<K, V> batch(Consumer<PropertiesMapper<K, V>> mutations) {
+        parent.batch(mapper -> mutations.accept(this));
+        return this;
+    }
+
+    @Override
+    public PropertiesMapper<K, V> transaction(Consumer<PropertiesMapper<K, V>> mutations) {
+        parent.transaction(mapper -> mutations.accept(this));
+        return this;
+    }
+
+    @Override
+    public PropertiesMapper<K, V>.Snapshot snapshot() {
+        return parent.snapshot();
+    }
+
+    @Override
+    public List<V> get(Object key) {
+        return parent.get(key);
+    }
+
+    @Override
+    public V get(K key, int index) {
+        return parent.get(key, index);
+    }
+
+    @Override
+    public V getOrDefault(K key, int index, V valueIfAbsent) {
+        return parent.getOrDefault(key, index, valueIfAbsent);
+    }
+
+    @Override
+    public boolean add(K key, V value) {
+        return parent.add(key, value);
+    }
+
+    @Override
+    public boolean addIfValueAbsent(K key, V value) {
+        return parent.addIfValueAbsent(key, value);
+    }
+
+    @Override
+    public boolean addIfPredicate(K key, V value, Predicate<PropertiesMapper<K, V>> mapPredicate) {
+        return parent.addIfPredicate(key, value, mapper -> mapPredicate.test(this));
+    }
+
+    @Override
+    public V set(K key, int index, V value) {
+        return parent.set(key, index, value);
+    }
+
+    @Override
+    public boolean setIfValueAbsent(K key, int index, V value) {
+        return parent.setIfValueAbsent(key, index, value);
+    }
+
+    @Override
+    public boolean setIfPredicate(K key, int index, V value, Predicate<PropertiesMapper<K, V>> mapPredicate) {
+        return parent.setIfPredicate(key, index, value, mapper -> mapPredicate.test(this));
+    }
+
+    @Override
+    public boolean setToCoordinates(K key, int index, V value) {
+        return parent.setToCoordinates(key, index, value);
+    }
+
+    @Override
+    public boolean hasKey(K key) {
+        return parent.hasKey(key);
+    }
+
+    @Override
+    public boolean hasValueAtKey(K key, V value) {
+        return parent.hasValueAtKey(key, value);
+    }
+
+    @Override
+    public boolean removeValues(V value) {
+        return parent.removeValues(value);
+    }
+
+    @Override
+    public List<V> removeKey(K key) {
+        return parent.removeKey(key);
+    }
+
+    @Override
+    public V replace(K key, int index, V value) {
+        return parent.replace(key, index, value);
+    }
+
+    @Override
+    public V compute(K key, int index, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return parent.compute(key, index, remappingFunction);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, int index, Function<? super K, ? extends V> mappingFunction) {
+        return parent.computeIfAbsent(key, index, mappingFunction);
+    }
+
+    @Override
+    public V computeIfPresent(K key, int index, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return parent.computeIfPresent(key, index, remappingFunction);
+    }
+
+    @Override
+    public boolean removeValueFromKey(K key, V value) {
+        return parent.removeValueFromKey(key, value);
+    }
+
+    @Override
+    public void reloadFromFile() {
+        // views are created with the constructor that does not load, so the parent is always set here
+        parent.reloadFromFile();
+    }
+
+    @Override
+    public void writeToFile() {
+        parent.writeToFile();
+    }
+
+    @Override
+    protected void writeChanges() {
+        parent.writeChanges();
+    }
+
+    @Override
+    protected void changed() {
+        parent.changed();
+    }
+
+    @Override
+    protected void changed(K key) {
+        parent.changed(key);
+    }
+
+    @Override
+    List<V> provideList(K atKey) {
+        return parent.provideList(atKey);
+    }
+
+    @Override
+    protected Object lockFor(K key) {
+        return parent.lockFor(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return parent.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return parent.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return parent.isEmpty();
+    }
+
+    @Override
+    public KeySetView<K, List<V>> keySet() {
+        return parent.keySet();
+    }
+
+    @Override
+    public Collection<List<V>> values() {
+        return parent.values();
+    }
+
+    @Override
+    public Set<Map.Entry<K, List<V>>> entrySet() {
+        return parent.entrySet();
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return parent.containsValue(value);
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return parent.contains(value);
+    }
+
+    @Override
+    public List<V> getOrDefault(Object key, List<V> defaultValue) {
+        return parent.getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public List<V> put(K key, List<V> value) {
+        return parent.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends List<V>> map) {
+        parent.putAll(map);
+    }
+
+    @Override
+    public List<V> putIfAbsent(K key, List<V> value) {
+        return parent.putIfAbsent(key, value);
+    }
+
+    @Override
+    public List<V> remove(Object key) {
+        return parent.remove(key);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return parent.remove(key, value);
+    }
+
+    @Override
+    public List<V> replace(K key, List<V> value) {
+        return parent.replace(key, value);
+    }
+
+    @Override
+    public boolean replace(K key, List<V> oldValue, List<V> newValue) {
+        return parent.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super List<V>, ? extends List<V>> function) {
+        parent.replaceAll(function);
+    }
+
+    @Override
+    public List<V> compute(K key, BiFunction<? super K, ? super List<V>, ? extends List<V>> remappingFunction) {
+        return parent.compute(key, remappingFunction);
+    }
+
+    @Override
+    public List<V> computeIfAbsent(K key, Function<? super K, ? extends List<V>> mappingFunction) {
+        return parent.computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public List<V> computeIfPresent(K key, BiFunction<? super K, ? super List<V>, ? extends List<V>> remappingFunction) {
+        return parent.computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public List<V> merge(K key, List<V> value,
+                         BiFunction<? super List<V>, ? super List<V>, ? extends List<V>> remappingFunction) {
+        return parent.merge(key, value, remappingFunction);
+    }
+
+    @Override
+    public void clear() {
+        parent.clear();
+    }
+
+    @Override
+    public long mappingCount() {
+        return parent.mappingCount();
+    }
+
+    @Override
+    public KeySetView<K, List<V>> keySet(List<V> mappedValue) {
+        return parent.keySet(mappedValue);
+    }
+
+    @Override
+    public Enumeration<K> keys() {
+        return parent.keys();
+    }
+
+    @Override
+    public Enumeration<List<V>> elements() {
+        return parent.elements();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super List<V>> action) {
+        parent.forEach(action);
+    }
+
+    @Override
+    public void forEach(long parallelismThreshold, BiConsumer<? super K, ? super List<V>> action) {
+        parent.forEach(parallelismThreshold, action);
+    }
+
+    @Override
+    public <U> void forEach(long parallelismThreshold, BiFunction<? super K, ? super List<V>, ? extends U> transformer,
+                            Consumer<? super U> action) {
+        parent.forEach(parallelismThreshold, transformer, action);
+    }
+
+    @Override
+    public void forEachKey(long parallelismThreshold, Consumer<? super K> action) {
+        parent.forEachKey(parallelismThreshold, action);
+    }
+
+    @Override
+    public <U> void forEachKey(long parallelismThreshold, Function<? super K, ? extends U> transformer,
+                               Consumer<? super U> action) {
+        parent.forEachKey(parallelismThreshold, transformer, action);
+    }
+
+    @Override
+    public void forEachValue(long parallelismThreshold, Consumer<? super List<V>> action) {
+        parent.forEachValue(parallelismThreshold, action);
+    }
+
+    @Override
+    public <U> void forEachValue(long parallelismThreshold, Function<? super List<V>, ? extends U> transformer,
+                                 Consumer<? super U> action) {
+        parent.forEachValue(parallelismThreshold, transformer, action);
+    }
+
+    @Override
+    public void forEachEntry(long parallelismThreshold, Consumer<? super Map.Entry<K, List<V>>> action) {
+        parent.forEachEntry(parallelismThreshold, action);
+    }
+
+    @Override
+    public <U> void forEachEntry(long parallelismThreshold, Function<Map.Entry<K, List<V>>, ? extends U> transformer,
+                                 Consumer<? super U> action) {
+        parent.forEachEntry(parallelismThreshold, transformer, action);
+    }
+
+    @Override
+    public <U> U search(long parallelismThreshold, BiFunction<? super K, ? super List<V>, ? extends U> searchFunction) {
+        return parent.search(parallelismThreshold, searchFunction);
+    }
+
+    @Override
+    public <U> U searchKeys(long parallelismThreshold, Function<? super K, ? extends U> searchFunction) {
+        return parent.searchKeys(parallelismThreshold, searchFunction);
+    }
+
+    @Override
+    public <U> U searchValues(long parallelismThreshold, Function<? super List<V>, ? extends U> searchFunction) {
+        return parent.searchValues(parallelismThreshold, searchFunction);
+    }
+
+    @Override
+    public <U> U searchEntries(long parallelismThreshold, Function<Map.Entry<K, List<V>>, ? extends U> searchFunction) {
+        return parent.searchEntries(parallelismThreshold, searchFunction);
+    }
+
+    @Override
+    public <U> U reduce(long parallelismThreshold, BiFunction<? super K, ? super List<V>, ? extends U> transformer,
+                        BiFunction<? super U, ? super U, ? extends U> reducer) {
+        return parent.reduce(parallelismThreshold, transformer, reducer);
+    }
+
+    @Override
+    public double reduceToDouble(long parallelismThreshold, ToDoubleBiFunction<? super K, ? super List<V>> transformer,
+                                 double basis, DoubleBinaryOperator reducer) {
+        return parent.reduceToDouble(parallelismThreshold, transformer, basis, reducer);
+    }
+
+    @Override
+    public long reduceToLong(long parallelismThreshold, ToLongBiFunction<? super K, ? super List<V>> transformer,
+                             long basis, LongBinaryOperator reducer) {
+        return parent.reduceToLong(parallelismThreshold, transformer, basis, reducer);
+    }
+
+    @Override
+    public int reduceToInt(long parallelismThreshold, ToIntBiFunction<? super K, ? super List<V>> transformer,
+                           int basis, IntBinaryOperator reducer) {
+        return parent.reduceToInt(parallelismThreshold, transformer, basis, reducer);
+    }
+
+    @Override
+    public K reduceKeys(long parallelismThreshold, BiFunction<? super K, ? super K, ? extends K> reducer) {
+        return parent.reduceKeys(parallelismThreshold, reducer);
+    }
+
+    @Override
+    public <U> U reduceKeys(long parallelismThreshold, Function<? super K, ? extends U> transformer,
+                            BiFunction<? super U, ? super U, ? extends U> reducer) {
+        return parent.reduceKeys(parallelismThreshold, transformer, reducer);
+    }
+
+    @Override
+    public double reduceKeysToDouble(long parallelismThreshold, ToDoubleFunction<? super K> transformer,
+                                     double basis, DoubleBinaryOperator reducer) {
+        return parent.reduceKeysToDouble(parallelismThreshold, transformer, basis, reducer);
+    }
+
+    @Override
+    public long reduceKeysToLong(long parallelismThreshold, ToLongFunction<? super K> transformer,
+                                 long basis, LongBinaryOperator reducer) {
+        return parent.reduceKeysToLong(parallelismThreshold, transformer, basis, reducer);
+    }
+
+    @Override
+    public int reduceKeysToInt(long parallelismThreshold, ToIntFunction<? super K> transformer,
+                               int basis, IntBinaryOperator reducer) {
+        return parent.reduceKeysToInt(parallelismThreshold, transformer, basis, reducer);
+    }
+
+    @Override
+    public List<V> reduceValues(long parallelismThreshold,
+                                BiFunction<? super List<V>, ? super List<V>, ? extends List<V>> reducer) {
+        return parent.reduceValues(parallelismThreshold, reducer);
+    }
+
+    @Override
+    public <U> U reduceValues(long parallelismThreshold, Function<? super List<V>, ? extends U> transformer,
+                              BiFunction<? super U, ? super U, ? extends U> reducer) {
+        return parent.reduceValues(parallelismThreshold, transformer, reducer);
+    }
+
+    @Override
+    public double reduceValuesToDouble(long parallelismThreshold, ToDoubleFunction<? super List<V>> transformer,
+                                       double basis, DoubleBinaryOperator reducer) {
+        return parent.reduceValuesToDouble(parallelismThreshold, transformer, basis, reducer);
+    }
+
+    @Override
+    public long reduceValuesToLong(long parallelismThreshold, ToLongFunction<? super List<V>> transformer,
+                                   long basis, LongBinaryOperator reducer) {
+        return parent.reduceValuesToLong(parallelismThreshold, transformer, basis, reducer);
+    }
+
+    @Override
+    public int reduceValuesToInt(long parallelismThreshold, ToIntFunction<? super List<V>> transformer,
+                                 int basis, IntBinaryOperator reducer) {
+        return parent.reduceValuesToInt(parallelismThreshold, transformer, basis, reducer);
+    }
+
+    @Override
+    public Map.Entry<K, List<V>> reduceEntries(long parallelismThreshold,
+                                               BiFunction<Map.Entry<K, List<V>>, Map.Entry<K, List<V>>,
+                                                       ? extends Map.Entry<K, List<V>>> reducer) {
+        return parent.reduceEntries(parallelismThreshold, reducer);
+    }
+
+    @Override
+    public <U> U reduceEntries(long parallelismThreshold, Function<Map.Entry<K, List<V>>, ? extends U> transformer,
+                               BiFunction<? super U, ? super U, ? extends U> reducer) {
+        return parent.reduceEntries(parallelismThreshold, transformer, reducer);
+    }
+
+    @Override
+    public double reduceEntriesToDouble(long parallelismThreshold, ToDoubleFunction<Map.Entry<K, List<V>>> transformer,
+                                        double basis, DoubleBinaryOperator reducer) {
+        return parent.reduceEntriesToDouble(parallelismThreshold, transformer, basis, reducer);
+    }
+
+    @Override
+    public long reduceEntriesToLong(long parallelismThreshold, ToLongFunction<Map.Entry<K, List<V>>> transformer,
+                                    long basis, LongBinaryOperator reducer) {
+        return parent.reduceEntriesToLong(parallelismThreshold, transformer, basis, reducer);
+    }
+
+    @Override
+    public int reduceEntriesToInt(long parallelismThreshold, ToIntFunction<Map.Entry<K, List<V>>> transformer,
+                                  int basis, IntBinaryOperator reducer) {
+        return parent.reduceEntriesToInt(parallelismThreshold, transformer, basis, reducer);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return parent.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return parent.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return parent.toString();
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return parent.iterator();
+    }
+
+    @Override
+    public void forEach(Consumer<? super V> action) {
+        parent.forEach(action);
+    }
+
+    @Override
+    public Spliterator<V> spliterator() {
+        return parent.spliterator();
+    }
+
+    @Override
+    public Stream<V> stream() {
+        return parent.stream();
+    }
+
+    @Override
+    public Stream<V> parallelStream() {
+        return parent.parallelStream();
+    }
 }
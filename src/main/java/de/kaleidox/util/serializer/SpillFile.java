@@ -0,0 +1,173 @@
+package de.kaleidox.util.serializer;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class represents the on-disk store of the keys that a bounded {@link PropertiesMapper} evicted from memory.
+ * The encoded values of every key are appended to a file, and only their position is kept in memory.
+ * Space of taken or replaced values is reclaimed by rewriting the file once most of it is unused.
+ *
+ * @param <K> The type of the keys.
+ */
+class SpillFile<K> implements Closeable {
+    private final static long COMPACT_THRESHOLD = 1 << 20;
+
+    private final File file;
+    private final ConcurrentHashMap<K, long[]> slots = new ConcurrentHashMap<>();
+    private RandomAccessFile data;
+    private long usedBytes = 0;
+
+    /**
+     * Creates a new instance. The file is truncated, and deleted when the JVM exits.
+     *
+     * @param file The file to store the values in.
+     * @throws UncheckedIOException If the file could not be opened.
+     */
+    SpillFile(File file) {
+        this.file = file;
+        try {
+            this.data = new RandomAccessFile(file, "rw");
+            data.setLength(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        file.deleteOnExit();
+    }
+
+    /**
+     * Checks whether a key is stored. Does not access the file.
+     *
+     * @param key The key to check for.
+     * @return whether the key is stored.
+     */
+    boolean contains(Object key) {
+        return slots.containsKey(key);
+    }
+
+    /**
+     * Stores the encoded values of a key, replacing previously stored values.
+     *
+     * @param key     The key.
+     * @param encoded The encoded values.
+     * @throws UncheckedIOException If the values could not be written.
+     */
+    synchronized void put(K key, String encoded) {
+        byte[] bytes = encoded.getBytes(StandardCharsets.UTF_8);
+        try {
+            long offset = data.length();
+            data.seek(offset);
+            data.write(bytes);
+
+            long[] previous = slots.put(key, new long[]{offset, bytes.length});
+            usedBytes += bytes.length - (previous == null ? 0 : previous[1]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the values of a key.
+     *
+     * @param key The key.
+     * @return The encoded values, or null if the key is not stored.
+     * @throws UncheckedIOException If the values could not be read.
+     */
+    synchronized @Nullable String get(Object key) {
+        long[] slot = slots.get(key);
+        return slot == null ? null : read(slot);
+    }
+
+    /**
+     * Reads and removes the values of a key.
+     *
+     * @param key The key.
+     * @return The encoded values, or null if the key is not stored.
+     * @throws UncheckedIOException If the values could not be read.
+     */
+    synchronized @Nullable String take(Object key) {
+        long[] slot = slots.remove(key);
+        if (slot == null) return null;
+
+        String encoded = read(slot);
+        usedBytes -= slot[1];
+        compactIfWasteful();
+        return encoded;
+    }
+
+    /**
+     * Reads the values of all stored keys.
+     *
+     * @return A new map of all stored keys to their encoded values.
+     * @throws UncheckedIOException If the values could not be read.
+     */
+    synchronized Map<K, String> readAll() {
+        Map<K, String> all = new HashMap<>(slots.size());
+        slots.forEach((key, slot) -> all.put(key, read(slot)));
+        return all;
+    }
+
+    /**
+     * Closes and deletes the file.
+     */
+    @Override
+    public synchronized void close() {
+        slots.clear();
+        try {
+            data.close();
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String read(long[] slot) {
+        byte[] bytes = new byte[(int) slot[1]];
+        try {
+            data.seek(slot[0]);
+            data.readFully(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Rewrites the file with only the stored values, once more than half of it is unused.
+     */
+    private void compactIfWasteful() {
+        try {
+            long length = data.length();
+            if (length < COMPACT_THRESHOLD || usedBytes * 2 > length) return;
+
+            File tmp = new File(file.getPath() + ".tmp");
+            try (RandomAccessFile compacted = new RandomAccessFile(tmp, "rw")) {
+                compacted.setLength(0);
+                for (long[] slot : slots.values()) {
+                    byte[] bytes = new byte[(int) slot[1]];
+                    data.seek(slot[0]);
+                    data.readFully(bytes);
+                    slot[0] = compacted.getFilePointer();
+                    compacted.write(bytes);
+                }
+            }
+
+            data.close();
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            data = new RandomAccessFile(file, "rw");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
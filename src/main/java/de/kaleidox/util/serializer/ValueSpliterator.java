@@ -0,0 +1,80 @@
+package de.kaleidox.util.serializer;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * This class represents a spliterator over the values of all keys of a {@link PropertiesMapper}.
+ * It is built from one spliterator per key, and splits by halving the range of keys first,
+ * then by splitting the spliterator of a single key.
+ * The sizes are exact, as long as the lists are not modified while the spliterator is in use.
+ *
+ * @param <V> The value type.
+ */
+class ValueSpliterator<V> implements Spliterator<V> {
+    private final Spliterator<V>[] parts;
+    private final long[] offsets;
+    private int index;
+    private final int fence;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param parts The spliterators of the lists of all keys.
+     */
+    ValueSpliterator(Spliterator<V>[] parts) {
+        this.parts = parts;
+        this.offsets = new long[parts.length + 1];
+        for (int i = 0; i < parts.length; i++)
+            offsets[i + 1] = offsets[i] + parts[i].estimateSize();
+        this.index = 0;
+        this.fence = parts.length;
+    }
+
+    private ValueSpliterator(Spliterator<V>[] parts, long[] offsets, int index, int fence) {
+        this.parts = parts;
+        this.offsets = offsets;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super V> action) {
+        while (index < fence) {
+            if (parts[index].tryAdvance(action)) return true;
+            index++;
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super V> action) {
+        for (; index < fence; index++) parts[index].forEachRemaining(action);
+    }
+
+    @Override
+    public Spliterator<V> trySplit() {
+        if (fence - index > 1) {
+            // the first part may already be partially consumed, so it always stays a part of the lower half
+            int mid = (index + 1 + fence) >>> 1;
+            ValueSpliterator<V> prefix = new ValueSpliterator<>(parts, offsets, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        return index < fence ? parts[index].trySplit() : null;
+    }
+
+    @Override
+    public long estimateSize() {
+        if (index >= fence) return 0;
+
+        // the first remaining part may already be partially consumed or split
+        return parts[index].estimateSize() + offsets[fence] - offsets[index + 1];
+    }
+
+    @Override
+    public int characteristics() {
+        return SIZED | SUBSIZED;
+    }
+}
@@ -0,0 +1,68 @@
+package de.kaleidox.util.config
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Measures the read throughput of a {@link Configuration} with 1 up to 16 threads, for lookups through
+ * {@link Configuration#var(String, Class)} and {@link ConfigKey#get()}, compared to a synchronized {@link Hashtable}.
+ * Run with {@code gradlew benchmark -Pbenchmark=de.kaleidox.util.config.ConfigurationBenchmark}.
+ */
+class ConfigurationBenchmark {
+    static final int KEYS = 256
+    static final long MEASURE_MILLIS = 2000
+
+    static void main(String[] args) {
+        Configuration config = new Configuration("configTest.json")
+        Hashtable<String, Integer> table = new Hashtable<>()
+        List<String> names = (0..<KEYS).collect { "bench.key" + it }
+        names.eachWithIndex { String name, int i ->
+            config.register(name, i)
+            table.put(name, i)
+        }
+        List<ConfigKey<Integer>> keys = names.collect { config.key(it, Integer) }
+
+        Map<String, Closure<Integer>> modes = [
+                "hashtable": { int i -> table.get(names.get(i)) },
+                "var"      : { int i -> config.var(names.get(i), Integer) },
+                "key"      : { int i -> keys.get(i).get() }
+        ]
+
+        println String.format("%8s %12s %14s", "threads", "lookup", "ops/s")
+        [1, 2, 4, 8, 16].each { int threads ->
+            modes.each { String mode, Closure<Integer> lookup ->
+                run(threads, lookup) // warmup
+                println String.format("%8d %12s %,14d", threads, mode, run(threads, lookup))
+            }
+        }
+    }
+
+    static long run(int threads, Closure<Integer> lookup) {
+        AtomicBoolean running = new AtomicBoolean(true)
+        AtomicLong ops = new AtomicLong()
+        CountDownLatch done = new CountDownLatch(threads)
+        threads.times {
+            Thread.start {
+                ThreadLocalRandom random = ThreadLocalRandom.current()
+                long count = 0
+                long sum = 0
+                while (running.get()) {
+                    sum += lookup.call(random.nextInt(KEYS))
+                    count++
+                }
+                // consume the results, so that the lookups cannot be skipped
+                if (sum == 42) println()
+                ops.addAndGet(count)
+                done.countDown()
+            }
+        }
+
+        Thread.sleep(MEASURE_MILLIS)
+        running.set(false)
+        done.await()
+
+        return (long) (ops.get() * 1000 / MEASURE_MILLIS)
+    }
+}
@@ -1,5 +1,9 @@
 package de.kaleidox.util.config
 
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
 
 import org.junit.Before
 import org.junit.Test
@@ -34,8 +38,183 @@ class ConfigurationTest {
         assert !config.var("person.lang.cpp", Boolean)
     }
 
+    @Test
+    void testUtf8AndArrays() {
+        assert config.var("greeting") == "Grüße, 世界"
+        assert config.containsKey("person.tags")
+        assert config.var("person.lang.java", Boolean)
+    }
+
+    @Test
+    void testKeyCachesUntilRegisteredAgain() {
+        int mapped = 0
+        config.register("person.age", 20, { mapped++; it as Integer })
+        ConfigKey<Integer> age = config.key("person.age", Integer)
+
+        assert age.get() == 19
+        assert age.get() == 19
+        assert mapped == 1
+
+        config.register("person.age", 20, { mapped++; (it as Integer) + 1 })
+        assert age.get() == 20
+        assert mapped == 2
+    }
+
+    @Test
+    void testLookupsFollowChanges() {
+        Configuration.ConfigNode node = config.remove("level")
+        assert !config.containsKey("level")
+        try {
+            config.var("level")
+            assert false
+        } catch (NoSuchElementException ignored) {
+        }
+
+        config.put("level.copy", node)
+        assert config.get("level.copy").is(node)
+        assert config.keySet().containsAll(["level.copy", "person.age"])
+
+        config.clear()
+        assert config.isEmpty() && !config.containsKey("person.age")
+    }
+
+    @Test
+    void testRegisteringAppendsToTable() {
+        FlatTable<Integer> table = FlatTable.empty()
+        List<FlatTable<Integer>> tables = []
+        1000.times {
+            table = table.with("key" + it, it)
+            tables.add(table)
+        }
+        assert table.size() == 1000
+        assert (0..<1000).every { table.get("key" + it) == it }
+        // an older table shares the arrays, but ignores the entries that were appended after it
+        assert tables[499].get("key499") == 499 && tables[499].get("key500") == null && tables[499].size() == 500
+
+        // an older table copies its entries instead of appending to the shared arrays
+        FlatTable<Integer> branch = tables[499].with("other", -1)
+        assert branch.get("other") == -1 && branch.get("key499") == 499 && branch.size() == 501
+        assert branch.get("key500") == null
+        assert table.get("other") == null && table.get("key999") == 999
+
+        // writers that start from the same table do not see each other's entries
+        FlatTable<Integer> base = FlatTable.empty().with("base", 0).with("base2", 0)
+        List<FlatTable<Integer>> branches = Collections.synchronizedList([])
+        (0..<4).collect { int t ->
+            Thread.start { 200.times { branches.add(base.with("t" + t + "." + it, t)) } }
+        }*.join()
+        assert branches.every { it.size() == 3 && it.get("base") == 0 }
+        assert branches.collect { b -> (0..<4).sum { t -> (0..<200).count { b.get("t" + t + "." + it) != null } } }
+                .every { it == 1 }
+
+        1000.times { config.register("bulk" + it, it) }
+        config.putAll(["copy.a": config.get("bulk1"), "copy.b": config.get("bulk2")])
+        assert config.var("bulk999", Integer) == 999
+        assert config.get("copy.b").is(config.get("bulk2"))
+    }
+
+    @Test
+    void testLaterSourcesTakePrecedence() {
+        System.setProperty("configTest.person.age", "21")
+        System.setProperty("configTest.person.height", "1.8")
+        System.setProperty("configTest.person.id", "007")
+        System.setProperty("configTest.person.version", "1.10")
+        System.setProperty("configTest.person.token", "123456789012345678901234567890")
+        try {
+            Configuration layered = new Configuration(ConfigSource.resource("configTest.json"),
+                    { ["level": "info", "person.name": "Tobi"] } as ConfigSource,
+                    ConfigSource.systemProperties("configTest."))
+
+            assert layered.var("level") == "info"
+            assert layered.var("person.name") == "Tobi"
+            assert layered.var("person.age", Integer) == 21
+            assert layered.var("person.height", Double) == 1.8d
+            assert layered.var("person.lang.java", Boolean)
+            // kept as they are, as they would not format back to the same text
+            assert layered.var("person.id", String) == "007"
+            assert layered.var("person.version", String) == "1.10"
+            assert layered.var("person.token", String) == "123456789012345678901234567890"
+        } finally {
+            System.clearProperty("configTest.person.age")
+            System.clearProperty("configTest.person.height")
+            System.clearProperty("configTest.person.id")
+            System.clearProperty("configTest.person.version")
+            System.clearProperty("configTest.person.token")
+        }
+    }
+
+    @Test
+    void testCachedFileSkipsUnchangedSource() {
+        File file = File.createTempFile("configCache", ".json")
+        File cache = new File(file.path + ".cache")
+        try {
+            file.setText('{"a": 1, "b": {"c": "Grüße", "d": 2.5, "e": 4000000000, "f": [1]}, "g": false}', "UTF-8")
+            Configuration parsed = new Configuration(ConfigSource.cachedFile(file))
+            assert cache.exists()
+            assert parsed.var("b.c") == "Grüße"
+
+            // same size and modification time, so the cache is read instead of the file
+            long lastModified = file.lastModified()
+            file.setText(file.getText("UTF-8").replace('"a": 1', '"a": 3'), "UTF-8")
+            file.setLastModified(lastModified)
+            Configuration cached = new Configuration(ConfigSource.cachedFile(file))
+            assert cached.var("a", Integer) == 1
+            assert cached.var("b.d", Double) == 2.5d
+            assert cached.var("b.e", Long) == 4000000000L
+            assert cached.containsKey("b.f") && cached.get("b.f") != null
+            assert !cached.var("g", Boolean)
+
+            file.text = '{"a": 42}'
+            assert new Configuration(ConfigSource.cachedFile(file)).var("a", Integer) == 42
+        } finally {
+            file.delete()
+            cache.delete()
+        }
+    }
+
+    @Test
+    void testReloadSwapsValuesAndReportsChanges() {
+        File dir = new File(Configuration.BASE_PATH)
+        boolean created = dir.mkdirs()
+        File file = new File(dir, "reloadTest.json")
+        file.text = '{"a": 1, "b": {"c": "x"}, "d": true}'
+        Configuration reloading = new Configuration("reloadTest.json").register("e", "default")
+        def changes = new LinkedBlockingQueue<Set<String>>()
+        reloading.addListener { changes.add(it) }
+        ConfigKey<Integer> a = reloading.key("a", Integer)
+        assert a.get() == 1
+
+        try {
+            file.text = '{"a": 1, "b": {"c": "y"}, "e": "set"}'
+            reloading.reload()
+            assert changes.poll() == ["b.c", "d", "e"] as Set
+            assert reloading.var("b.c") == "y"
+            assert reloading.var("e") == "set"
+            assert !reloading.containsKey("d")
+
+            reloading.watch()
+            // replaced at once, so the watcher cannot read it half-written
+            File replacement = new File(dir, "reloadTest.json.tmp")
+            replacement.text = '{"a": 2, "b": {"c": "y"}}'
+            Files.move(replacement.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            assert changes.poll(10, TimeUnit.SECONDS) == ["a", "e"] as Set
+            assert reloading.var("a", Integer) == 2
+            assert a.get() == 2
+            assert reloading.var("e") == "default"
+        } finally {
+            reloading.stopWatching()
+            file.delete()
+            if (created) dir.delete()
+        }
+    }
+
     @Test(expected = NoSuchElementException)
     void testUnknownVar() {
         config.var("color")
     }
+
+    @Test(expected = NoSuchElementException)
+    void testUnknownKey() {
+        config.key("color", String)
+    }
 }
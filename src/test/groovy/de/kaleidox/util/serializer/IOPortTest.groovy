@@ -0,0 +1,62 @@
+package de.kaleidox.util.serializer
+
+import java.util.zip.Deflater
+
+import org.junit.Test
+
+class IOPortTest {
+    @Test
+    void testRecordsMatchSplit() {
+        List<String> inputs = ["", ",", "a", "a,b", ",a,,b,,", "a,,,", ",,,a", "a, b ;c;; d", "▪1▪▪2▪", "abc"]
+        List<String> delimiters = [",", "▪", ",+", "\\s*;\\s*", ",,", ""]
+
+        for (String input : inputs) for (String delimiter : delimiters) for (int chunkSize : [1, 2, 3, 8192]) {
+            def records = new RecordIterator(new StringReader(input), delimiter, chunkSize).toList()
+            assert records == input.split(delimiter).toList(): "'$input' split by '$delimiter' in chunks of $chunkSize"
+        }
+    }
+
+    @Test
+    void testReadAsCollectionUsesSupplier() {
+        def port = new IOPort<String, String>({ "b,a,b" }, null)
+
+        def collection = port.readAsCollection({ new TreeSet<String>() }, ",")
+        assert collection instanceof TreeSet
+        assert collection == ["a", "b"] as TreeSet
+        assert port.readAsStream(",").count() == 3
+    }
+
+    @Test
+    void testCompressedPort() {
+        Map<String, String> content = [:]
+        100.times { content.put("key" + it, (0..<50).collect { i -> it * 50 + i }.join("▪")) }
+
+        File plain = File.createTempFile("plain", ".properties")
+        plain.deleteOnExit()
+        IOPort.mapPort(plain).write(content)
+
+        for (CompressedIOPort.Format format : CompressedIOPort.Format.values()) {
+            File file = File.createTempFile("compressed", ".properties")
+            file.deleteOnExit()
+            def port = new CompressedIOPort(file, format, Deflater.BEST_COMPRESSION)
+            assert port.read().isEmpty()
+
+            port.write(content)
+            assert file.length() < plain.length() / 4
+            assert port.read() == content
+
+            def bytes = new ByteArrayOutputStream()
+            def streamPort = new CompressedIOPort({ new ByteArrayInputStream(bytes.toByteArray()) }, { bytes },
+                    format, Deflater.BEST_SPEED)
+            assert streamPort.read().isEmpty()
+            streamPort.write(content)
+            assert streamPort.read() == content
+        }
+
+        try {
+            new CompressedIOPort(plain, CompressedIOPort.Format.GZIP, 10)
+            assert false
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
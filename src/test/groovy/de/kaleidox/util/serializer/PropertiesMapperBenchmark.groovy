@@ -0,0 +1,115 @@
+package de.kaleidox.util.serializer
+
+import de.kaleidox.util.functional.DoubleFunction
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.zip.Deflater
+
+/**
+ * Measures how long it takes to construct a {@link PropertiesMapper} from files of different sizes,
+ * for {@code .properties} files, compressed {@code .properties} files and binary files, eagerly and in lazy mode,
+ * and how much heap a mapper of boxed values retains compared to a {@link LongPropertiesMapper}.
+ * Run with {@code gradlew benchmark}.
+ */
+class PropertiesMapperBenchmark {
+    static final int VALUES_PER_KEY = 100
+    static final int RUNS = 5
+
+    static void main(String[] args) {
+        println String.format("%10s %12s %12s %10s %8s", "values", "format", "file bytes", "load ms", "writes")
+
+        [1_000, 10_000, 100_000, 1_000_000].each { int values ->
+            Map<String, String> content = content(values)
+
+            File file = File.createTempFile("benchmark", ".properties")
+            file.deleteOnExit()
+            IOPort.mapPort(file).write(content)
+            measure(values, "properties", file, IOPort.mapPort(file), false)
+            measure(values, "lazy", file, IOPort.mapPort(file), true)
+            file.delete()
+
+            [(CompressedIOPort.Format.GZIP): Deflater.DEFAULT_COMPRESSION,
+             (CompressedIOPort.Format.DEFLATE): Deflater.BEST_SPEED].each { format, level ->
+                File compressedFile = File.createTempFile("benchmark", ".properties.z")
+                compressedFile.deleteOnExit()
+                CompressedIOPort compressedPort = new CompressedIOPort(compressedFile, format, level)
+                compressedPort.write(content)
+                measure(values, format.name().toLowerCase() + " " + level, compressedFile, compressedPort, false)
+                compressedFile.delete()
+            }
+
+            File binaryFile = File.createTempFile("benchmark", ".bin")
+            binaryFile.deleteOnExit()
+            BinaryIOPort binaryPort = new BinaryIOPort(binaryFile)
+            binaryPort.write(content)
+            measure(values, "binary", binaryFile, binaryPort, false)
+            binaryFile.delete()
+        }
+
+        println()
+        println String.format("%10s %22s %10s", "values", "mapper", "heap MB")
+        int values = 1_000_000
+        Map<String, String> content = content(values)
+        IOPort<ConcurrentHashMap<String, String>, Map<String, String>> port =
+                new IOPort<>({ new ConcurrentHashMap<>(content) }, { Map<String, String> map -> })
+        footprint(values, "PropertiesMapper") {
+            new PropertiesMapper<>(port, null, DoubleFunction.identity(), DoubleFunction.STRING_LONG)
+        }
+        footprint(values, "LongPropertiesMapper") {
+            new LongPropertiesMapper<>(port, null, DoubleFunction.identity())
+        }
+    }
+
+    static void footprint(int values, String name, Closure<PropertiesMapper> factory) {
+        long before = usedHeap()
+        PropertiesMapper mapper = factory.call()
+        long after = usedHeap()
+
+        println String.format("%10d %22s %10.2f", mapper.stream().count(), name, (after - before) / 1_048_576d)
+    }
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime()
+        3.times {
+            System.gc()
+            Thread.sleep(100)
+        }
+        return runtime.totalMemory() - runtime.freeMemory()
+    }
+
+    static void measure(int values, String format, File file,
+                        IOPort<ConcurrentHashMap<String, String>, Map<String, String>> port, boolean lazy) {
+        int writes = 0
+        IOPort<ConcurrentHashMap<String, String>, Map<String, String>> countingPort = port instanceof BinaryIOPort
+                ? new BinaryIOPort(file) {
+                    @Override
+                    void writeLists(Map<String, ? extends List<String>> lists) {
+                        writes++
+                    }
+                }
+                : new IOPort<>({ port.read() }, { Map<String, String> map -> writes++ })
+
+        long best = Long.MAX_VALUE
+        RUNS.times {
+            long start = System.nanoTime()
+            new PropertiesMapper<>(countingPort, null, DoubleFunction.identity(), DoubleFunction.STRING_LONG, lazy)
+            best = Math.min(best, System.nanoTime() - start)
+        }
+
+        println String.format("%10d %12s %12d %10.2f %8d", values, format, file.length(), best / 1_000_000d, writes)
+    }
+
+    static Map<String, String> content(int values) {
+        Map<String, String> map = new HashMap<>()
+        long value = 0
+        for (int key = 0; key < values / VALUES_PER_KEY; key++) {
+            StringBuilder sb = new StringBuilder()
+            for (int i = 0; i < VALUES_PER_KEY; i++) {
+                if (i > 0) sb.append('▪')
+                sb.append(value++)
+            }
+            map.put("key" + key, sb.toString())
+        }
+        return map
+    }
+}
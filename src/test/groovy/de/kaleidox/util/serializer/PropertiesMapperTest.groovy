@@ -0,0 +1,685 @@
+package de.kaleidox.util.serializer
+
+import de.kaleidox.util.functional.DoubleFunction
+import groovy.transform.CompileStatic
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+import org.junit.Before
+import org.junit.Test
+
+class PropertiesMapperTest {
+    Map<String, String> stored
+    int writes
+    PropertiesMapper<String, Long> mapper
+
+    @Before
+    void setup() {
+        stored = new HashMap<>()
+        writes = 0
+        mapper = new PropertiesMapper<>(port(), null, DoubleFunction.identity(), DoubleFunction.STRING_LONG)
+    }
+
+    IOPort<ConcurrentHashMap<String, String>, Map<String, String>> port() {
+        new IOPort<>({ new ConcurrentHashMap<>(stored) }, { Map<String, String> map ->
+            stored = new HashMap<>(map)
+            writes++
+        })
+    }
+
+    @Test
+    void testWriteThrough() {
+        mapper.add("ids", 1L)
+        mapper.add("ids", 2L)
+
+        assert writes == 2
+        assert stored["ids"] == "1▪2"
+    }
+
+    @Test
+    void testLoadDoesNotWrite() {
+        stored = ["a": "1▪2▪3", "b": "", "c": "4"]
+        mapper = new PropertiesMapper<>(port(), null, DoubleFunction.identity(), DoubleFunction.STRING_LONG)
+
+        assert writes == 0
+        assert mapper.get("a") == [1L, 2L, 3L]
+        assert mapper.get("b") == []
+        assert mapper.get("c") == [4L]
+
+        mapper.reloadFromFile()
+        assert writes == 0
+        assert mapper.get("a") == [1L, 2L, 3L]
+    }
+
+    @Test
+    void testFilePort() {
+        File file = File.createTempFile("mapper", ".properties")
+        def fileMapper = new PropertiesMapper<>(file, DoubleFunction.identity(), DoubleFunction.STRING_LONG)
+        fileMapper.add("a", 1L)
+        fileMapper.add("a", 2L)
+
+        assert new PropertiesMapper<>(file, DoubleFunction.identity(), DoubleFunction.STRING_LONG).get("a") == [1L, 2L]
+        file.delete()
+    }
+
+    @Test
+    void testWatchAppliesOnlyChanges() {
+        File file = File.createTempFile("mapper", ".properties")
+        IOPort.mapPort(file).write(["a": "1", "b": "2", "c": "3"])
+        int decoded = 0
+        DoubleFunction<String, Long> counting = new DoubleFunction<>(
+                { String str -> decoded++; Long.parseLong(str) }, { Long value -> String.valueOf(value) })
+        def watched = new PropertiesMapper<>(IOPort.mapPort(file), null, DoubleFunction.identity(), counting)
+                .watch(file)
+        watched.add("c", 4L)
+        decoded = 0
+
+        IOPort.mapPort(file).write(["a": "5", "c": "3▪4"])
+        watched.reloadChanges()
+        assert decoded == 1
+        assert watched.get("a") == [5L]
+        assert !watched.containsKey("b")
+        assert watched.get("c") == [3L, 4L]
+
+        IOPort.mapPort(file).write(["a": "5", "c": "3▪4", "d": "6"])
+        long timeout = System.currentTimeMillis() + 10000
+        while (!watched.containsKey("d") && System.currentTimeMillis() < timeout) Thread.sleep(10)
+        watched.close()
+
+        assert watched.get("d") == [6L]
+        assert decoded == 2
+        file.delete()
+    }
+
+    @Test
+    void testSelectIsView() {
+        stored = ["a": "1"]
+        int reads = 0
+        mapper = new PropertiesMapper<>(new IOPort<>({ reads++; new ConcurrentHashMap<>(stored) },
+                { Map<String, String> map -> stored = new HashMap<>(map) }),
+                null, DoubleFunction.identity(), DoubleFunction.STRING_LONG).indexValues()
+
+        def selected = mapper.select("a")
+        assert reads == 1
+        assert selected.getParent().is(mapper)
+        assert selected.get().is(mapper.get("a"))
+
+        selected.add(2L)
+        mapper.add("a", 3L)
+        assert selected.get() == [1L, 2L, 3L]
+        assert stored["a"] == "1▪2▪3"
+        assert mapper.getKeysWithValue(2L) == ["a"] as Set
+        assert selected.addIfPredicate(4L, { it.is(selected) })
+        assert selected.size() == 1
+
+        selected.put("b", [5L])
+        assert mapper.get("b") == [5L]
+        selected.computeIfAbsent("c", { [6L] })
+        assert mapper.containsKey("c")
+        assert selected.toString() == mapper.toString()
+        assert selected == mapper && selected.entrySet() == mapper.entrySet()
+        assert selected.remove("c") == [6L] && !mapper.containsKey("c")
+    }
+
+    @Test
+    void testBoundedEvictsColdKeys() {
+        stored = [:]
+        10.times { stored.put("k" + it, it + "▪" + (it + 1)) }
+        mapper = new PropertiesMapper<>(port(), null, DoubleFunction.identity(), DoubleFunction.STRING_LONG)
+        File spillFile = File.createTempFile("spill", ".bin")
+        mapper.bounded(3, 0, spillFile)
+
+        assert mapper.isBounded()
+        assert mapper.size() == 3
+        assert mapper.getEvictionCount() == 7
+        assert spillFile.length() > 0
+
+        assert mapper.get("k0") == [0L, 1L]
+        assert mapper.get("k1", 1) == 2L
+        assert mapper.hasKey("k3")
+        mapper.get("k3")
+        assert mapper.keySet() == ["k0", "k1", "k3"] as Set
+        assert mapper.getMissCount() == 3
+        assert mapper.getHitCount() == 0
+
+        mapper.add("k5", 9L)
+        assert mapper.size() == 3
+        assert stored.size() == 10
+        assert stored["k5"] == "5▪6▪9"
+        assert stored["k9"] == "9▪10"
+
+        mapper.removeKey("k7")
+        assert !mapper.containsKey("k7")
+        assert stored.size() == 9
+        assert mapper.getMissCount() == 3
+        assert mapper.getHitCount() == 0
+        assert mapper.get("k5") == [5L, 6L, 9L]
+        assert mapper.getHitCount() == 1
+
+        mapper.close()
+        assert !mapper.isBounded()
+        assert !spillFile.exists()
+        assert mapper.size() == 9
+        assert mapper.get("k9") == [9L, 10L]
+    }
+
+    @Test
+    void testBatchWritesOnce() {
+        stored = ["a": "1▪2", "b": "3"]
+        mapper = new PropertiesMapper<>(port(), null, DoubleFunction.identity(), DoubleFunction.STRING_LONG)
+
+        mapper.batch {
+            it.add("a", 4L)
+            it.set("b", 0, 5L)
+            it.removeValueFromKey("a", 1L)
+            it.batch { nested -> nested.add("c", 6L) }
+        }
+        assert writes == 1
+        assert stored == ["a": "2▪4", "b": "5", "c": "6"]
+    }
+
+    @Test
+    void testBatchWhileEvicting() {
+        stored = [:]
+        mapper = new PropertiesMapper<>(port(), null, DoubleFunction.identity(), DoubleFunction.STRING_LONG)
+        File spillFile = File.createTempFile("spill", ".bin")
+        mapper.bounded(4, 0, spillFile)
+
+        Thread batches = Thread.start {
+            200.times { int i -> mapper.batch { (0..<8).each { key -> it.add("b" + key, i as Long) } } }
+        }
+        Thread evicting = Thread.start {
+            2000.times { int i -> mapper.add("e" + (i % 32), i as Long) }
+        }
+        batches.join(30_000)
+        evicting.join(30_000)
+        assert !batches.alive && !evicting.alive
+
+        mapper.close()
+        assert stored.size() == 40
+        assert stored["b7"].split("▪").length == 200
+        spillFile.delete()
+    }
+
+    @Test
+    void testTransactionRollsBack() {
+        stored = ["a": "1▪2", "b": "3"]
+        boolean failWrites = false
+        mapper = new PropertiesMapper<>(new IOPort<>({ new ConcurrentHashMap<>(stored) }, { Map<String, String> map ->
+            if (failWrites) throw new UncheckedIOException(new IOException("disk full"))
+            stored = new HashMap<>(map)
+        }), null, DoubleFunction.identity(), DoubleFunction.STRING_LONG).indexValues()
+
+        try {
+            mapper.transaction {
+                it.add("a", 4L)
+                it.removeKey("b")
+                throw new IllegalStateException("abort")
+            }
+            assert false
+        } catch (IllegalStateException ignored) {
+        }
+        assert mapper.get("a") == [1L, 2L]
+        assert mapper.get("b") == [3L]
+        assert stored == ["a": "1▪2", "b": "3"]
+
+        failWrites = true
+        try {
+            mapper.transaction {
+                it.set("a", 0, 7L)
+                it.add("c", 8L)
+            }
+            assert false
+        } catch (UncheckedIOException ignored) {
+        }
+        assert mapper.get("a") == [1L, 2L]
+        assert !mapper.containsKey("c")
+        assert mapper.getKeysWithValue(7L).isEmpty()
+        assert mapper.getKeysWithValue(1L) == ["a"] as Set
+
+        failWrites = false
+        mapper.transaction { it.add("c", 8L) }
+        assert stored == ["a": "1▪2", "b": "3", "c": "8"]
+    }
+
+    @Test
+    void testSnapshot() {
+        stored = ["a": "1▪2", "b": "3"]
+        mapper = new PropertiesMapper<>(port(), null, DoubleFunction.identity(), DoubleFunction.STRING_LONG)
+
+        def snapshot = mapper.snapshot()
+        mapper.add("a", 4L)
+        mapper.add("a", 5L)
+        mapper.set("b", 0, 6L)
+        mapper.removeKey("b")
+        mapper.add("c", 7L)
+
+        def later = mapper.snapshot()
+        mapper.removeValueFromKey("a", 1L)
+
+        assert snapshot.get("a") == [1L, 2L]
+        assert !snapshot.containsKey("c")
+        assert snapshot.get("b") == [3L]
+        assert snapshot.keySet() == ["a", "b"] as Set
+        assert snapshot.stream().sorted().toArray() == [1L, 2L, 3L] as Object[]
+        assert later.get("a") == [1L, 2L, 4L, 5L]
+        assert later.keySet() == ["a", "c"] as Set
+        assert mapper.get("a") == [2L, 4L, 5L]
+
+        snapshot.close()
+        later.close()
+        assert mapper.@history.isEmpty()
+        try {
+            snapshot.get("a")
+            assert false
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    @Test
+    void testValueIndex() {
+        stored = ["a": "1▪2", "b": "2▪3"]
+        mapper = new PropertiesMapper<>(port(), null, DoubleFunction.identity(), DoubleFunction.STRING_LONG)
+                .indexValues()
+
+        assert mapper.getKeysWithValue(2L) == ["a", "b"] as Set
+        mapper.add("c", 2L)
+        mapper.add("c", 2L)
+        mapper.set("a", 1, 4L)
+        assert mapper.getKeysWithValue(2L) == ["b", "c"] as Set
+        assert mapper.getKeysWithValue(4L) == ["a"] as Set
+
+        mapper.removeValueFromKey("c", 2L)
+        assert mapper.hasValue(2L)
+        assert mapper.removeValues(2L)
+        assert !mapper.hasValue(2L)
+        assert mapper.get("c") == []
+        assert !mapper.removeValues(2L)
+
+        mapper.removeKey("a")
+        assert !mapper.hasValue(1L)
+        assert !mapper.hasValue(4L)
+        assert mapper.hasValue(3L)
+
+        stored = ["b": "5"]
+        mapper.reloadFromFile()
+        assert !mapper.hasValue(3L)
+        assert mapper.getKeysWithValue(5L) == ["b"] as Set
+    }
+
+    @Test
+    void testLazyDecoding() {
+        stored = ["a": "1▪2", "b": "3▪4", "c": "5"]
+        int decoded = 0, encoded = 0
+        DoubleFunction<String, Long> counting = new DoubleFunction<>(
+                { String str -> decoded++; Long.parseLong(str) },
+                { Long value -> encoded++; String.valueOf(value) })
+        mapper = new PropertiesMapper<>(port(), null, DoubleFunction.identity(), counting, true)
+
+        assert mapper.isLazy()
+        assert decoded == 0
+        assert mapper.keySet() == ["a", "b", "c"] as Set
+
+        mapper.add("a", 6L)
+        assert decoded == 2
+        assert encoded == 4 // the added value is also tested for the splitter
+        assert stored == ["a": "1▪2▪6", "b": "3▪4", "c": "5"]
+
+        assert mapper.get("c") == [5L]
+        assert decoded == 3
+        assert mapper.stream().count() == 6
+        assert decoded == 5
+    }
+
+    @Test
+    void testOnlyChangedKeysAreEncoded() {
+        stored = ["a": "1▪2", "b": "3▪4▪5"]
+        int encoded = 0
+        DoubleFunction<String, Long> counting = new DoubleFunction<>(
+                { String str -> Long.parseLong(str) },
+                { Long value -> encoded++; String.valueOf(value) })
+        mapper = new PropertiesMapper<>(port(), null, DoubleFunction.identity(), counting)
+
+        mapper.add("a", 6L)
+        assert encoded == 7 // the first write encodes all loaded keys, the added value is tested for the splitter
+
+        mapper.add("a", 7L)
+        assert encoded == 12
+        mapper.set("b", 0, 8L)
+        assert encoded == 15
+        mapper.removeKey("a")
+        assert encoded == 15
+        assert stored == ["b": "8▪4▪5"]
+
+        mapper.get("b").add(9L)
+        mapper.writeToFile()
+        assert encoded == 19
+        assert stored == ["b": "8▪4▪5▪9"]
+    }
+
+    @Test
+    void testReplaceAndComputeAreWritten() {
+        stored = ["a": "1▪2", "b": "3"]
+        mapper = new PropertiesMapper<>(port(), null, DoubleFunction.identity(), DoubleFunction.STRING_LONG)
+
+        assert mapper.replace("a", 0, 9L) == 1L
+        assert stored == ["a": "9▪2", "b": "3"]
+        assert mapper.compute("a", 1, { key, value -> value + 10 }) == 2L
+        assert stored == ["a": "9▪12", "b": "3"]
+
+        mapper.writeBehind(0, TimeUnit.MILLISECONDS, 0)
+        mapper.computeIfPresent("b", 0, { key, value -> value * 2 })
+        mapper.flush()
+        assert stored == ["a": "9▪12", "b": "6"]
+    }
+
+    @Test
+    void testConcurrentWriters() {
+        stored = ["a": "1"]
+        mapper = new PropertiesMapper<>(port(), null, DoubleFunction.identity(), DoubleFunction.STRING_LONG)
+                .concurrent()
+        mapper.writeBehind(0, TimeUnit.MILLISECONDS, 0)
+        assert mapper.get("a") instanceof java.util.concurrent.CopyOnWriteArrayList
+
+        List<Thread> threads = (0..<8).collect { int t ->
+            Thread.start {
+                1000.times { mapper.add("key" + (it % 4), (t * 1000 + it) as Long) }
+            }
+        }
+        threads*.join()
+        mapper.close()
+
+        assert (0..<4).sum { mapper.get("key" + it).size() } == 8000
+        assert stored.size() == 5
+    }
+
+    @Test
+    void testIterationAndStreams() {
+        stored = ["a": "1▪2▪3", "b": "", "c": "4▪5"]
+        mapper = new PropertiesMapper<>(port(), null, DoubleFunction.identity(), DoubleFunction.STRING_LONG)
+
+        assert mapper.iterator().toList().sort() == [1L, 2L, 3L, 4L, 5L]
+        List<Long> visited = []
+        mapper.forEach({ Long value -> visited.add(value) } as java.util.function.Consumer)
+        assert visited.sort() == [1L, 2L, 3L, 4L, 5L]
+
+        def spliterator = mapper.spliterator()
+        assert spliterator.estimateSize() == 5
+        assert spliterator.hasCharacteristics(Spliterator.SUBSIZED)
+        def prefix = spliterator.trySplit()
+        assert prefix.estimateSize() + spliterator.estimateSize() == 5
+
+        assert mapper.stream().count() == 5
+        assert mapper.parallelStream().mapToLong { it }.sum() == 15
+    }
+
+    @Test
+    void testBinaryPort() {
+        File file = File.createTempFile("mapper", ".bin")
+        file.delete()
+        def binaryMapper = new PropertiesMapper<>(new BinaryIOPort(file), null,
+                DoubleFunction.identity(), DoubleFunction.identity())
+
+        binaryMapper.add("a", "contains ▪ the splitter")
+        binaryMapper.add("a", "")
+        binaryMapper.add("b", "ünïcödé")
+
+        def loaded = new PropertiesMapper<>(new BinaryIOPort(file), null,
+                DoubleFunction.identity(), DoubleFunction.identity())
+        assert loaded.get("a") == ["contains ▪ the splitter", ""]
+        assert loaded.get("b") == ["ünïcödé"]
+
+        byte[] bytes = file.bytes
+        bytes[bytes.length - 12] ^= 1
+        file.bytes = bytes
+        try {
+            new BinaryIOPort(file).readLists()
+            assert false
+        } catch (UncheckedIOException e) {
+            assert e.cause.message.contains("Checksum")
+        }
+        file.delete()
+    }
+
+    @Test
+    void testPrimitiveMappers() {
+        stored = ["a": "1▪2▪3▪", "b": ""]
+        def longMapper = new LongPropertiesMapper<>(port(), null, DoubleFunction.identity())
+
+        assert writes == 0
+        assert longMapper.get("a") instanceof LongPropertiesMapper.LongList
+        assert longMapper.get("a") == [1L, 2L, 3L]
+        assert longMapper.get("b") == []
+        assert longMapper.getLong("a", 2) == 3L
+        assert longMapper.getLongOrDefault("a", 3, -1L) == -1L
+
+        longMapper.add("b", Long.MAX_VALUE)
+        longMapper.set("a", 0, -4L)
+        longMapper.removeValueFromKey("a", 2L)
+        assert longMapper.toLongArray("a") == [-4L, 3L] as long[]
+        assert stored == ["a": "-4▪3", "b": String.valueOf(Long.MAX_VALUE)]
+
+        longMapper.concurrent()
+        LongPropertiesMapper.LongList list = longMapper.get("a")
+        assert list.isCopyOnWrite()
+        Iterator<Long> iterator = list.iterator()
+        longMapper.add("a", 7L)
+        longMapper.set("a", 0, 5L)
+        assert iterator.collect() == [-4L, 3L]
+        assert longMapper.get("a") == [5L, 3L, 7L]
+        assert longMapper.removeValueFromKey("a", 3L)
+        assert longMapper.toLongArray("a") == [5L, 7L] as long[]
+        assert stored["a"] == "5▪7"
+
+        // the list shrinks and grows while it is read
+        longMapper.writeBehind(1, TimeUnit.HOURS, Integer.MAX_VALUE)
+        Thread writer = Thread.start {
+            50000.times {
+                longMapper.add("a", 9L)
+                longMapper.removeValueFromKey("a", 9L)
+            }
+        }
+        List<Throwable> failures = Collections.synchronizedList([])
+        (0..<4).collect { Thread.start { readWhileAlive(longMapper, writer, failures) } }*.join()
+        assert failures.isEmpty()
+        assert longMapper.get("a") == [5L, 7L]
+        longMapper.close()
+        assert longMapper.get("a") == [5L, 7L]
+
+        File file = File.createTempFile("mapper", ".bin")
+        file.delete()
+        def intMapper = new IntPropertiesMapper<>(new BinaryIOPort(file), null, DoubleFunction.identity())
+        1000.times { intMapper.add("ids", it) }
+        def loaded = new IntPropertiesMapper<>(new BinaryIOPort(file), null, DoubleFunction.identity())
+        assert loaded.get("ids") instanceof IntPropertiesMapper.IntList
+        assert loaded.toIntArray("ids") == (0..<1000) as int[]
+        loaded.concurrent()
+        loaded.add("ids", 1000)
+        assert loaded.get("ids").isCopyOnWrite()
+        assert loaded.getInt("ids", 1000) == 1000
+        file.delete()
+    }
+
+    // statically compiled, so that the reads are fast enough to hit the writes
+    @CompileStatic
+    static void readWhileAlive(LongPropertiesMapper<String> mapper, Thread writer, List<Throwable> failures) {
+        try {
+            while (writer.isAlive()) {
+                long value = mapper.getLongOrDefault("a", 2, -1L)
+                if (value != 9L && value != -1L) throw new AssertionError("Unexpected value: " + value)
+            }
+        } catch (Throwable t) {
+            failures.add(t)
+        }
+    }
+
+    @Test
+    void testSegmentedPort() {
+        List<Map<String, String>> files = (0..<4).collect { new HashMap<String, String>() }
+        List<Integer> written = []
+        def segmentedPort = new SegmentedIOPort((0..<4).collect { int segment ->
+            new IOPort<ConcurrentHashMap<String, String>, Map<String, String>>({ new ConcurrentHashMap<>(files[segment]) },
+                    { Map<String, String> map ->
+                        files[segment] = new HashMap<>(map)
+                        synchronized (written) { written.add(segment) }
+                    })
+        })
+        segmentedPort.write((0..<100).collectEntries { ["key" + it, String.valueOf(it)] })
+        assert files.every { !it.isEmpty() }
+        written.clear()
+
+        int converted = 0
+        DoubleFunction<String, String> counting = new DoubleFunction<>({ String key -> key }, { String key -> converted++; key })
+        def segmentedMapper = new PropertiesMapper<>(segmentedPort, null, counting, DoubleFunction.STRING_LONG)
+        assert segmentedMapper.size() == 100
+        assert segmentedMapper.get("key42") == [42L]
+
+        // only the keys of the dirty segment are visited
+        converted = 0
+        segmentedMapper.add("key42", 43L)
+        assert converted <= files[segmentedPort.segmentOf("key42")].size() + 2
+        segmentedMapper.removeKey("key7")
+        int segment42 = segmentedPort.segmentOf("key42"), segment7 = segmentedPort.segmentOf("key7")
+        assert written == [segment42, segment7]
+        assert files[segment42]["key42"] == "42▪43"
+        assert !files[segment7].containsKey("key7")
+        assert files.sum { it.size() } == 99
+
+        written.clear()
+        segmentedMapper.writeToFile()
+        assert written.sort() == [0, 1, 2, 3]
+    }
+
+    @Test
+    void testAsyncPortCollapsesWrites() {
+        def release = new java.util.concurrent.CountDownLatch(1)
+        def async = new AsyncIOPort<ConcurrentHashMap<String, String>, Map<String, String>>(
+                new IOPort<>({ new ConcurrentHashMap<>(stored) }, { Map<String, String> map ->
+                    release.await()
+                    stored = new HashMap<>(map)
+                    writes++
+                }))
+        mapper = new PropertiesMapper<>(async, null, DoubleFunction.identity(), DoubleFunction.STRING_LONG)
+
+        100.times { mapper.add("ids", it as Long) }
+        assert writes == 0
+        def readFuture = async.readAsync()
+        release.countDown()
+
+        assert readFuture.get(5, TimeUnit.SECONDS)["ids"].split("▪").length == 100
+        mapper.close()
+        assert writes <= 2
+        assert stored["ids"].split("▪").length == 100
+    }
+
+    @Test
+    void testWriteBehindCoalesces() {
+        mapper.writeBehind(0, TimeUnit.MILLISECONDS, 0)
+        1000.times { mapper.add("ids", it as Long) }
+
+        assert writes == 0
+        assert mapper.isDirty()
+
+        mapper.flush()
+        assert writes == 1
+        assert !mapper.isDirty()
+        assert stored["ids"].split("▪").length == 1000
+
+        mapper.flush()
+        assert writes == 1
+    }
+
+    @Test
+    void testWriteBehindFlushesOnClose() {
+        mapper.writeBehind(1, TimeUnit.HOURS, 0)
+        mapper.add("ids", 4L)
+        mapper.close()
+
+        assert writes == 1
+        assert stored["ids"] == "4"
+
+        mapper.add("ids", 5L)
+        assert writes == 2
+    }
+
+    @Test
+    void testWriteBehindThreshold() {
+        mapper.writeBehind(0, TimeUnit.MILLISECONDS, 10)
+        10.times { mapper.add("ids", it as Long) }
+
+        long timeout = System.currentTimeMillis() + 5000
+        while (writes == 0 && System.currentTimeMillis() < timeout) Thread.sleep(10)
+        mapper.close()
+
+        assert writes == 1
+    }
+
+    @Test
+    void testJournalReplay() {
+        File file = File.createTempFile("mapper", ".bin")
+        file.delete()
+        JournalIOPort port = new JournalIOPort(file, '▪' as Character)
+        def journaled = new PropertiesMapper<>(port, '▪' as Character, DoubleFunction.identity(), DoubleFunction.STRING_LONG)
+
+        journaled.add("a", 1L)
+        journaled.add("a", 2L)
+        journaled.add("b", 3L)
+        journaled.set("a", 0, 4L)
+        journaled.removeValueFromKey("b", 3L)
+        journaled.add("c", 5L)
+        journaled.removeKey("c")
+
+        assert port.recordCount == 7
+        assert !file.exists()
+
+        port.compact()
+        assert port.recordCount == 0
+        journaled.add("b", 6L)
+        port.close()
+
+        port = new JournalIOPort(file, '▪' as Character)
+        def replayed = new PropertiesMapper<>(port, '▪' as Character, DoubleFunction.identity(), DoubleFunction.STRING_LONG)
+        assert replayed.get("a") == [4L, 2L]
+        assert replayed.get("b") == [6L]
+        assert !replayed.containsKey("c")
+        assert port.recordCount == 1
+
+        replayed.writeToFile()
+        assert port.recordCount == 0
+        port.close()
+        port.compact() // closed, so it does nothing
+
+        port = new JournalIOPort(file, '▪' as Character)
+        assert port.read() == ["a": "4▪2", "b": "6"]
+        port.close()
+
+        file.delete()
+        new File(file.path + ".journal").delete()
+    }
+
+    @Test
+    void testJournalRemoveValuesPerKey() {
+        File file = File.createTempFile("mapper", ".bin")
+        file.delete()
+        JournalIOPort port = new JournalIOPort(file, '▪' as Character)
+        def journaled = new PropertiesMapper<>(port, '▪' as Character, DoubleFunction.identity(), DoubleFunction.STRING_LONG)
+
+        journaled.add("a", 1L)
+        journaled.add("a", 2L)
+        journaled.add("b", 1L)
+        journaled.add("c", 3L)
+        assert journaled.removeValues(1L)
+        // one record per key the value was removed from, appended under the key's lock
+        assert port.recordCount == 6
+        journaled.add("a", 1L)
+        port.close()
+
+        port = new JournalIOPort(file, '▪' as Character)
+        assert port.read() == ["a": "2▪1", "b": "", "c": "3"]
+        port.close()
+
+        file.delete()
+        new File(file.path + ".journal").delete()
+    }
+}
@@ -0,0 +1,77 @@
+package de.kaleidox.util.serializer
+
+import de.kaleidox.util.functional.DoubleFunction
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Measures the throughput of a mixed read/write workload on a {@link PropertiesMapper} with 1, 4 and 16 threads,
+ * with and without concurrent mode.
+ * Run with {@code gradlew benchmark -Pbenchmark=de.kaleidox.util.serializer.PropertiesMapperThroughputBenchmark}.
+ */
+class PropertiesMapperThroughputBenchmark {
+    static final int KEYS = 1024
+    static final int VALUES_PER_KEY = 16
+    static final int WRITE_PERCENT = 10
+    static final long MEASURE_MILLIS = 2000
+
+    static void main(String[] args) {
+        println String.format("%8s %12s %14s", "threads", "mode", "ops/s")
+
+        [1, 4, 16].each { int threads ->
+            [false, true].each { boolean concurrent ->
+                run(threads, concurrent) // warmup
+                println String.format("%8d %12s %,14d", threads, concurrent ? "concurrent" : "default",
+                        run(threads, concurrent))
+            }
+        }
+    }
+
+    static long run(int threads, boolean concurrent) {
+        IOPort<ConcurrentHashMap<String, String>, Map<String, String>> port = new IOPort<>(
+                { new ConcurrentHashMap<String, String>() }, { Map<String, String> map -> })
+        PropertiesMapper<Integer, Long> mapper = new PropertiesMapper<>(port, null,
+                DoubleFunction.STRING_INTEGER, DoubleFunction.STRING_LONG)
+        if (concurrent) mapper.concurrent()
+        // only count mutations, the workload should not measure encoding the map
+        mapper.writeBehind(0, TimeUnit.MILLISECONDS, 0)
+        for (int key = 0; key < KEYS; key++)
+            for (long value = 0; value < VALUES_PER_KEY; value++)
+                mapper.add(key, value)
+
+        AtomicBoolean running = new AtomicBoolean(true)
+        AtomicLong ops = new AtomicLong()
+        CountDownLatch done = new CountDownLatch(threads)
+        threads.times {
+            Thread.start {
+                ThreadLocalRandom random = ThreadLocalRandom.current()
+                long count = 0
+                while (running.get()) {
+                    int key = random.nextInt(KEYS)
+                    if (random.nextInt(100) < WRITE_PERCENT) {
+                        long value = random.nextInt(VALUES_PER_KEY)
+                        mapper.removeValueFromKey(key, value)
+                        mapper.add(key, value)
+                    } else {
+                        mapper.getOrDefault(key, random.nextInt(VALUES_PER_KEY), -1L)
+                    }
+                    count++
+                }
+                ops.addAndGet(count)
+                done.countDown()
+            }
+        }
+
+        Thread.sleep(MEASURE_MILLIS)
+        running.set(false)
+        done.await()
+        mapper.close()
+
+        return (long) (ops.get() * 1000 / MEASURE_MILLIS)
+    }
+}